@@ -1,15 +1,7 @@
 package com.ddd.stewme;
 
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import net.minecraft.core.registries.BuiltInRegistries;
-import net.minecraft.resources.ResourceLocation;
-import net.minecraft.world.item.Item;
-import net.neoforged.bus.api.SubscribeEvent;
-import net.neoforged.fml.common.EventBusSubscriber;
-import net.neoforged.fml.event.config.ModConfigEvent;
+import com.ddd.stewme.core.OverLimitBehavior;
+import com.ddd.stewme.core.StorageBackend;
 import net.neoforged.neoforge.common.ModConfigSpec;
 
 // An example config class. This is not required, but it's a good idea to have one to keep your config organized.
@@ -17,6 +9,26 @@ import net.neoforged.neoforge.common.ModConfigSpec;
 public class Config {
     private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
 
+    // 活跃炼药锅配额，0表示不限制
+    public static final ModConfigSpec.IntValue MAX_CAULDRONS_PER_CHUNK = BUILDER
+            .comment("Maximum number of active cauldrons per chunk, 0 for unlimited")
+            .defineInRange("maxCauldronsPerChunk", 16, 0, Integer.MAX_VALUE);
+
+    public static final ModConfigSpec.IntValue MAX_CAULDRONS_PER_REGION = BUILDER
+            .comment("Maximum number of active cauldrons per region (32x32 chunks), 0 for unlimited")
+            .defineInRange("maxCauldronsPerRegion", 512, 0, Integer.MAX_VALUE);
+
+    public static final ModConfigSpec.EnumValue<OverLimitBehavior> OVER_LIMIT_BEHAVIOR = BUILDER
+            .comment("What happens once a cap is reached: REFUSE new cauldrons, or POOL particles of over-cap chunks",
+                    "and regions down to at most the cap's number of groups per chunk or region. Only cauldrons holding effects count towards the caps")
+            .defineEnum("overLimitBehavior", OverLimitBehavior.REFUSE);
+
+    public static final ModConfigSpec.EnumValue<StorageBackend> STORAGE_BACKEND = BUILDER
+            .comment("Where cauldron data is persisted: SAVED_DATA (NBT) or MAPPED (memory-mapped file per dimension).",
+                    "MAPPED keeps only cauldrons in loaded chunks in memory and reads the rest from the file on demand.",
+                    "Switching backends converts the existing data on the next load")
+            .defineEnum("storageBackend", StorageBackend.SAVED_DATA);
+
     static final ModConfigSpec SPEC = BUILDER.build();
 
 }
@@ -1,5 +1,6 @@
 package com.ddd.stewme;
 
+import com.ddd.stewme.command.StewMeCommands;
 import com.ddd.stewme.handlers.StewMeEventHandler;
 import org.slf4j.Logger;
 import com.mojang.logging.LogUtils;
@@ -7,8 +8,10 @@ import net.neoforged.bus.api.IEventBus;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.ModContainer;
+import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
 
 /**
@@ -20,6 +23,8 @@ public class StewMe {
     public static final String MODID = "stew_me";
     public static final Logger LOGGER = LogUtils.getLogger();
 
+    private final StewMeEventHandler eventHandler = new StewMeEventHandler();
+
     /**
      * 模组构造函数，在模组加载时调用
      * @param modEventBus 模组事件总线，用于注册模组相关事件
@@ -32,9 +37,12 @@ public class StewMe {
         Registry.ITEMS.register(modEventBus);
         LOGGER.info("[StewMe] 物品注册完成");
 
+        // 注册服务器配置（锅数量配额等）
+        modContainer.registerConfig(ModConfig.Type.SERVER, Config.SPEC);
+
         // 注册事件监听器
         modEventBus.addListener(this::commonSetup);
-        NeoForge.EVENT_BUS.register(new StewMeEventHandler());
+        NeoForge.EVENT_BUS.register(eventHandler);
         NeoForge.EVENT_BUS.register(this);
         LOGGER.info("[StewMe] 事件处理器注册完成");
 
@@ -58,4 +66,13 @@ public class StewMe {
     public void onServerStarting(ServerStartingEvent event) {
         LOGGER.info("[StewMe] 服务器启动，模组准备就绪");
     }
+
+    /**
+     * 注册命令事件处理方法
+     * @param event 注册命令事件
+     */
+    @SubscribeEvent
+    public void onRegisterCommands(RegisterCommandsEvent event) {
+        StewMeCommands.register(event.getDispatcher(), eventHandler);
+    }
 }
\ No newline at end of file
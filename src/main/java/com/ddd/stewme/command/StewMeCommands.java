@@ -0,0 +1,95 @@
+// StewMeCommands.java
+package com.ddd.stewme.command;
+
+import com.ddd.stewme.core.DensityIndex;
+import com.ddd.stewme.data.StewMeDataManager;
+import com.ddd.stewme.handlers.StewMeEventHandler;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模组管理命令
+ * /stewme densest [数量]：列出当前维度中活跃炼药锅最多的区块
+ * /stewme stats：显示模组数据结构的数量和估算内存占用
+ */
+public class StewMeCommands {
+    private static final int DEFAULT_DENSEST_COUNT = 10;
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher, StewMeEventHandler handler) {
+        dispatcher.register(Commands.literal("stewme")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(context -> showStats(context, handler)))
+                .then(Commands.literal("densest")
+                        .executes(context -> listDensestChunks(context, DEFAULT_DENSEST_COUNT))
+                        .then(Commands.argument("count", IntegerArgumentType.integer(1, 100))
+                                .executes(context -> listDensestChunks(context,
+                                        IntegerArgumentType.getInteger(context, "count"))))));
+    }
+
+    /**
+     * 显示所有维度的锅数量、玩家冷却记录和会话数量及估算内存占用
+     * @param context 命令上下文
+     * @param handler 事件处理器
+     * @return 所有维度的锅总数
+     */
+    private static int showStats(CommandContext<CommandSourceStack> context, StewMeEventHandler handler) {
+        CommandSourceStack source = context.getSource();
+        int totalCauldrons = 0;
+
+        for (ServerLevel level : source.getServer().getAllLevels()) {
+            StewMeDataManager manager = StewMeDataManager.get(level);
+            int cauldrons = manager.getTable().size();
+            long bytes = manager.getTable().estimatedBytes();
+            totalCauldrons += cauldrons;
+            source.sendSuccess(() -> Component.translatable("command.stew_me.stats.level",
+                    level.dimension().location().toString(), cauldrons, manager.getActiveCauldronPositions().size(),
+                    manager.getTable().density().chunkCount(), bytes,
+                    cauldrons > 0 ? bytes / cauldrons : 0), false);
+        }
+
+        int players = handler.getTrackedPlayerCount();
+        long playerBytes = handler.getEstimatedPlayerBytes();
+        int sessions = handler.getActiveSessionCount();
+        int online = source.getServer().getPlayerCount();
+        source.sendSuccess(() -> Component.translatable("command.stew_me.stats.players",
+                players, sessions, online, playerBytes, players > 0 ? playerBytes / players : 0), false);
+        return totalCauldrons;
+    }
+
+    /**
+     * 列出锅数量最多的区块
+     * @param context 命令上下文
+     * @param count 最多列出的区块数量
+     * @return 列出的区块数量
+     */
+    private static int listDensestChunks(CommandContext<CommandSourceStack> context, int count) {
+        CommandSourceStack source = context.getSource();
+        ServerLevel level = source.getLevel();
+        StewMeDataManager manager = StewMeDataManager.get(level);
+        List<Map.Entry<Long, Integer>> densest = manager.getTable().density().densestChunks(count);
+
+        if (densest.isEmpty()) {
+            source.sendSuccess(() -> Component.translatable("command.stew_me.densest.empty"), false);
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.translatable("command.stew_me.densest.header",
+                manager.getActiveCauldronPositions().size(), level.dimension().location().toString()), false);
+        for (Map.Entry<Long, Integer> entry : densest) {
+            int chunkX = DensityIndex.chunkX(entry.getKey());
+            int chunkZ = DensityIndex.chunkZ(entry.getKey());
+            source.sendSuccess(() -> Component.translatable("command.stew_me.densest.entry",
+                    chunkX, chunkZ, chunkX << 4, chunkZ << 4, entry.getValue()), false);
+        }
+        return densest.size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.ddd.stewme.core;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 通过监听变化事件维护的活跃锅位置集合
+ * 粒子等消费者直接遍历该集合，不再扫描整个锅表
+ */
+public class ActiveCauldronSet implements CauldronListener {
+    private final Set<Long> positions = new LinkedHashSet<>();
+
+    @Override
+    public void onEffectAccumulated(long pos, int effectId, int level, int time) {
+        // 只有真正有效果的锅才算活跃
+        positions.add(pos);
+    }
+
+    @Override
+    public void onRemoved(long pos) {
+        positions.remove(pos);
+    }
+
+    @Override
+    public void onPagedIn(long pos) {
+        // 只读入有效果的锅
+        positions.add(pos);
+    }
+
+    @Override
+    public void onPagedOut(long pos) {
+        positions.remove(pos);
+    }
+
+    /**
+     * 将已有的锅加入集合，用于从存档加载后的初始化
+     */
+    public void seed(CauldronTable table) {
+        table.view().forEach((pos, state) -> {
+            if (!state.isEmpty()) {
+                positions.add(pos);
+            }
+        });
+    }
+
+    /**
+     * 获取所有活跃锅的打包坐标（只读）
+     */
+    public Set<Long> positions() {
+        return Collections.unmodifiableSet(positions);
+    }
+
+    public int size() {
+        return positions.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.ddd.stewme.core;
+
+/**
+ * 炼药锅酿造规则，纯Java实现，不依赖Minecraft运行时
+ * 同一效果取最高等级，累计时间不超过72000tick
+ * 玩家在锅内每tick转移30tick效果，锅内效果每10tick衰减1tick
+ */
+public final class BrewingRules {
+    /** 锅内单个效果的累计时间上限（tick） */
+    public static final int MAX_EFFECT_TIME = 72000;
+    /** 玩家在锅内每tick转移的效果时间（tick） */
+    public static final int TRANSFER_PER_TICK = 30;
+    /** 自然衰减的执行间隔（tick） */
+    public static final int DECAY_INTERVAL = 10;
+    /** 每次自然衰减减少的效果时间（tick） */
+    public static final int DECAY_AMOUNT = 1;
+
+    private BrewingRules() {
+    }
+
+    /**
+     * 合并等级：取较高的等级
+     */
+    public static int mergeLevel(int existing, int added) {
+        return Math.max(existing, added);
+    }
+
+    /**
+     * 合并时间：累加后不超过上限
+     */
+    public static int mergeTime(int existing, int added) {
+        return (int) Math.min((long) existing + added, MAX_EFFECT_TIME);
+    }
+
+    /**
+     * 计算一次转移中从玩家身上取出的时间
+     * 剩余时间不足30tick时取出全部剩余时间
+     */
+    public static int transferAmount(int duration) {
+        return duration - TRANSFER_PER_TICK > 0 ? TRANSFER_PER_TICK : duration;
+    }
+
+    /**
+     * 计算一次转移后玩家身上剩余的时间，0表示效果被移除
+     */
+    public static int remainingAfterTransfer(int duration) {
+        int remaining = duration - TRANSFER_PER_TICK;
+        return remaining > 0 ? remaining : 0;
+    }
+
+    /**
+     * 判断某个游戏时间是否执行自然衰减
+     */
+    public static boolean isDecayTick(long gameTime) {
+        return gameTime % DECAY_INTERVAL == 0;
+    }
+
+    /**
+     * 计算区间(from, to]内执行自然衰减的次数
+     */
+    public static int decaysBetween(long fromExclusive, long toInclusive) {
+        if (toInclusive <= fromExclusive) {
+            return 0;
+        }
+        return (int) (Math.floorDiv(toInclusive, DECAY_INTERVAL) - Math.floorDiv(fromExclusive, DECAY_INTERVAL));
+    }
+}
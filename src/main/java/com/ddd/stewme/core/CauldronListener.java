@@ -0,0 +1,61 @@
+package com.ddd.stewme.core;
+
+/**
+ * 炼药锅状态变化监听器，由CauldronTable在服务器线程上同步回调
+ * 回调中不应修改产生事件的CauldronTable
+ * 所有方法默认不做任何处理，按需覆盖
+ */
+public interface CauldronListener {
+
+    /**
+     * 新的锅加入表中
+     * @param pos 打包坐标
+     */
+    default void onCreated(long pos) {
+    }
+
+    /**
+     * 锅中累加了效果
+     * @param pos 打包坐标
+     * @param effectId 效果ID
+     * @param level 合并后的等级
+     * @param time 合并后的时间
+     */
+    default void onEffectAccumulated(long pos, int effectId, int level, int time) {
+    }
+
+    /**
+     * 自然衰减使锅中所有效果耗尽，随后会触发onRemoved
+     * @param pos 打包坐标
+     */
+    default void onBecameEmpty(long pos) {
+    }
+
+    /**
+     * 锅中的效果被玩家盛出，随后会触发onRemoved
+     * @param pos 打包坐标
+     */
+    default void onDrained(long pos) {
+    }
+
+    /**
+     * 锅从表中移除（衰减耗尽、盛出、方块被破坏或被替换）
+     * @param pos 打包坐标
+     */
+    default void onRemoved(long pos) {
+    }
+
+    /**
+     * 已保存的锅从映射文件读入表中，不会触发onCreated和onEffectAccumulated
+     * @param pos 打包坐标
+     */
+    default void onPagedIn(long pos) {
+    }
+
+    /**
+     * 未修改的锅因区块卸载被换出表，映射文件中仍保存着该锅，不会触发onRemoved
+     * @param pos 打包坐标
+     */
+    default void onPagedOut(long pos) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.ddd.stewme.core;
+
+/**
+ * 玩家站在岩浆锅中的一次转移会话，由事件处理器和长时间运行测试共用
+ * 开始时只记录剩余时间大于0的有限效果；结算时把转移结果写入锅状态，再从玩家当前的效果时间中扣除转移的时间，
+ * 玩家效果的自然减少由游戏（或模拟）在会话期间照常执行
+ * @param <P> 玩家类型
+ * @param <L> 世界类型
+ */
+public class CauldronSession<P, L> {
+    /** 会话每秒结算一次，刷新玩家看到的效果时间 */
+    public static final long SAMPLE_INTERVAL_TICKS = 20;
+    // 估算用：对象头+字段
+    private static final int OBJECT_BYTES = 48;
+
+    private final P player;
+    private final L level;
+    private final TransferSession transfer;
+    private final long sampleTick;
+    // 最近一次属于会话的玩家tick，结算到该tick（含）
+    private long tickedAt;
+    // 效果被外部修改后需要重新结算
+    private boolean stale = false;
+
+    private CauldronSession(P player, L level, TransferSession transfer) {
+        this.player = player;
+        this.level = level;
+        this.transfer = transfer;
+        this.sampleTick = Math.min(transfer.getExpiryTick(), transfer.getStartTick() + SAMPLE_INTERVAL_TICKS);
+        this.tickedAt = transfer.getStartTick();
+    }
+
+    /**
+     * 在本tick的逐tick转移之后开始会话，只记录剩余时间大于0的效果（无限时间的效果不转移）
+     * @param pos 锅的打包坐标
+     * @param tick 当前游戏时间
+     * @param effectIds 玩家身上所有效果的ID
+     * @param levels 对应的效果等级
+     * @param durations 对应的剩余时间，本tick的转移已经扣除
+     * @param state 锅的当前状态
+     * @return 新的会话，没有可转移的效果时返回null
+     */
+    public static <P, L> CauldronSession<P, L> start(P player, L level, long pos, long tick,
+                                                     int[] effectIds, int[] levels, int[] durations, CauldronState state) {
+        int count = 0;
+        for (int duration : durations) {
+            if (duration > 0) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        int[] ids = new int[count];
+        int[] sessionLevels = new int[count];
+        int[] sessionDurations = new int[count];
+        int n = 0;
+        for (int i = 0; i < durations.length; i++) {
+            if (durations[i] > 0) {
+                ids[n] = effectIds[i];
+                sessionLevels[n] = levels[i];
+                sessionDurations[n] = durations[i];
+                n++;
+            }
+        }
+        return new CauldronSession<>(player, level, new TransferSession(pos, tick, ids, sessionLevels, sessionDurations, state));
+    }
+
+    public P getPlayer() {
+        return player;
+    }
+
+    public L getLevel() {
+        return level;
+    }
+
+    public long getPos() {
+        return transfer.getPos();
+    }
+
+    /**
+     * 到达该游戏时间时需要结算：采样或有效果耗尽
+     */
+    public long getSampleTick() {
+        return sampleTick;
+    }
+
+    /**
+     * 记录玩家本tick仍在锅中，结算时包含该tick
+     */
+    public void tickAt(long tick) {
+        tickedAt = tick;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * 玩家效果被外部修改，下一次玩家tick时结算
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * 会话是否属于指定世界中的指定锅
+     */
+    public boolean targets(L level, long pos) {
+        return this.level == level && transfer.getPos() == pos;
+    }
+
+    /**
+     * 结算会话：把到最近一次属于会话的玩家tick（含）为止的转移结果写入锅状态，并从玩家效果中扣除
+     * @param state 锅状态，锅已不存在时为null，只调整玩家效果
+     * @param decayedThrough 锅表实际执行过的最后一次自然衰减的游戏时间
+     * @param effects 读写玩家效果时间
+     */
+    public void settle(CauldronState state, long decayedThrough, PlayerEffects<? super P> effects) {
+        if (state != null) {
+            transfer.settle(tickedAt, decayedThrough, state);
+        }
+        for (int i = 0; i < transfer.effectCount(); i++) {
+            int effectId = transfer.effectIdAt(i);
+            int duration = effects.durationOf(player, effectId);
+            if (duration <= 0) {
+                continue;
+            }
+            if (transfer.isExpiredAt(i, tickedAt)) {
+                effects.setDuration(player, effectId, 0);
+                continue;
+            }
+            int deducted = transfer.deductedAt(i, tickedAt);
+            if (deducted > 0) {
+                effects.setDuration(player, effectId, Math.max(0, duration - deducted));
+            }
+        }
+    }
+
+    /**
+     * 估算本对象及其转移记录占用的堆内存字节数
+     */
+    public long estimatedBytes() {
+        return OBJECT_BYTES + transfer.estimatedBytes();
+    }
+
+    /**
+     * 读写玩家身上的效果时间
+     * @param <P> 玩家类型
+     */
+    public interface PlayerEffects<P> {
+        /**
+         * @return 效果的剩余时间，没有该效果时返回0，无限时间的效果返回负数，两者都不调整
+         */
+        int durationOf(P player, int effectId);
+
+        /**
+         * 设置效果的剩余时间，保留等级等其他属性，0表示移除效果
+         */
+        void setDuration(P player, int effectId, int duration);
+    }
+}
@@ -0,0 +1,201 @@
+package com.ddd.stewme.core;
+
+import java.util.Arrays;
+
+/**
+ * 单个炼药锅的效果状态，效果使用int类型的注册表ID表示
+ * 一个锅内效果数量很少，使用并行数组存储，避免装箱和哈希开销
+ * 放入CauldronTable后会绑定到该表，效果累加时通过表发布变化事件
+ */
+public class CauldronState {
+    private static final int INITIAL_CAPACITY = 4;
+    // 估算用：对象头+字段，以及每个int数组的数组头（64位JVM，压缩指针）
+    private static final int OBJECT_BYTES = 40;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private int[] effectIds = new int[INITIAL_CAPACITY];
+    private int[] levels = new int[INITIAL_CAPACITY];
+    private int[] times = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private CauldronTable owner;
+    private long ownerPos;
+    // 是否已计入所在表的密度索引（累加过效果才算活跃锅）
+    boolean counted;
+    // 上次写入映射文件之后是否被修改过，自然衰减不算修改（读取时会补上衰减）
+    boolean changed;
+
+    /**
+     * 添加效果到锅中
+     * 同一效果取最高等级，累计时间不超过72000tick
+     */
+    public void addEffect(int effectId, int level, int time) {
+        int index = indexOf(effectId);
+        if (index >= 0) {
+            levels[index] = BrewingRules.mergeLevel(levels[index], level);
+            times[index] = BrewingRules.mergeTime(times[index], time);
+        } else {
+            ensureCapacity(size + 1);
+            effectIds[size] = effectId;
+            levels[size] = level;
+            times[size] = BrewingRules.mergeTime(0, time);
+            size++;
+            index = size - 1;
+        }
+        changed = true;
+        if (owner != null) {
+            owner.fireAccumulated(this, ownerPos, effectId, levels[index], times[index]);
+        }
+    }
+
+    /**
+     * 直接设置效果的等级和时间，时间不大于0时移除该效果
+     * 用于结算解析计算的结果，不做合并
+     */
+    public void setEffect(int effectId, int level, int time) {
+        int index = indexOf(effectId);
+        changed = true;
+        if (time <= 0) {
+            if (index >= 0) {
+                size--;
+                effectIds[index] = effectIds[size];
+                levels[index] = levels[size];
+                times[index] = times[size];
+            }
+            return;
+        }
+        if (index < 0) {
+            ensureCapacity(size + 1);
+            index = size++;
+            effectIds[index] = effectId;
+        }
+        levels[index] = level;
+        times[index] = Math.min(time, BrewingRules.MAX_EFFECT_TIME);
+        if (owner != null) {
+            owner.fireAccumulated(this, ownerPos, effectId, levels[index], times[index]);
+        }
+    }
+
+    /**
+     * 从玩家身上的一个效果转移一次（30tick）到锅中
+     * @param effectId 效果ID
+     * @param level 效果等级
+     * @param duration 玩家身上该效果的剩余时间
+     * @return 转移后玩家身上的剩余时间，0表示效果应被移除
+     */
+    public int absorb(int effectId, int level, int duration) {
+        addEffect(effectId, level, BrewingRules.transferAmount(duration));
+        return BrewingRules.remainingAfterTransfer(duration);
+    }
+
+    /**
+     * 执行一次自然衰减，移除时间耗尽的效果
+     * @return 被移除的效果数量
+     */
+    public int decay() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int time = times[i] - BrewingRules.DECAY_AMOUNT;
+            if (time > 0) {
+                effectIds[kept] = effectIds[i];
+                levels[kept] = levels[i];
+                times[kept] = time;
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    public void clear() {
+        size = 0;
+        changed = true;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int effectIdAt(int index) {
+        checkIndex(index);
+        return effectIds[index];
+    }
+
+    public int levelAt(int index) {
+        checkIndex(index);
+        return levels[index];
+    }
+
+    public int timeAt(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    /**
+     * 查找效果所在的下标
+     * @return 下标，不存在时返回-1
+     */
+    public int indexOf(int effectId) {
+        for (int i = 0; i < size; i++) {
+            if (effectIds[i] == effectId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 遍历锅内所有效果
+     */
+    public void forEach(EffectVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.accept(effectIds[i], levels[i], times[i]);
+        }
+    }
+
+    void bind(CauldronTable table, long pos) {
+        this.owner = table;
+        this.ownerPos = pos;
+        this.counted = false;
+    }
+
+    void unbind() {
+        this.owner = null;
+        this.counted = false;
+    }
+
+    /**
+     * 估算本对象及其数组占用的堆内存字节数
+     */
+    public long estimatedBytes() {
+        return OBJECT_BYTES + 3L * (ARRAY_HEADER_BYTES + 4L * effectIds.length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > effectIds.length) {
+            int newLength = Math.max(capacity, effectIds.length * 2);
+            effectIds = Arrays.copyOf(effectIds, newLength);
+            levels = Arrays.copyOf(levels, newLength);
+            times = Arrays.copyOf(times, newLength);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * 效果遍历回调
+     */
+    @FunctionalInterface
+    public interface EffectVisitor {
+        void accept(int effectId, int level, int time);
+    }
+}
@@ -0,0 +1,284 @@
+package com.ddd.stewme.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * 一个维度内所有炼药锅状态的集合，使用打包后的坐标作为键
+ * 纯Java实现，可脱离游戏运行时进行测试和性能评估
+ * 同时维护按区块/区域统计的密度索引，用于配额检查，只统计累加过效果的锅，尚未累加效果的空状态不占配额
+ * 状态变化会同步发布给已注册的CauldronListener
+ * 使用映射文件存储时表中只保留已加载区块中的锅，其余的锅按需从文件读入（adopt），区块卸载后换出（evictIf）
+ */
+public class CauldronTable {
+    private final Map<Long, CauldronState> states = new HashMap<>();
+    private final DensityIndex density = new DensityIndex();
+    private final List<CauldronListener> listeners = new ArrayList<>();
+    // 估算用：HashMap节点+Long键，以及密度索引中分摊的开销
+    private static final int ENTRY_BYTES = 32 + 16 + 16;
+
+    /**
+     * 注册状态变化监听器
+     */
+    public void addListener(CauldronListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CauldronListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 根据打包坐标获取锅状态
+     * @return 对应的锅状态，如果不存在则返回null
+     */
+    public CauldronState get(long pos) {
+        return states.get(pos);
+    }
+
+    /**
+     * 获取锅状态，不存在时创建一个空状态
+     */
+    public CauldronState getOrCreate(long pos) {
+        CauldronState state = states.get(pos);
+        if (state == null) {
+            state = new CauldronState();
+            put(pos, state);
+        }
+        return state;
+    }
+
+    /**
+     * 添加或替换锅状态，替换时视为先移除旧锅再创建新锅
+     */
+    public void put(long pos, CauldronState state) {
+        CauldronState previous = states.put(pos, state);
+        if (previous == state) {
+            return;
+        }
+        if (previous != null) {
+            uncount(pos, previous);
+            previous.unbind();
+            fireRemoved(pos);
+        }
+        state.bind(this, pos);
+        state.changed = true;
+        for (CauldronListener listener : listeners) {
+            listener.onCreated(pos);
+        }
+        // 放入时已带有的效果同样视为累加
+        state.forEach((effectId, level, time) -> fireAccumulated(state, pos, effectId, level, time));
+    }
+
+    /**
+     * 放入从映射文件读入的锅状态，不视为新建或累加
+     * 文件中的锅在打开时已计入密度索引，这里不再重复计入；已在表中的锅保持不变
+     */
+    public void adopt(long pos, CauldronState state) {
+        if (states.putIfAbsent(pos, state) != null) {
+            return;
+        }
+        state.bind(this, pos);
+        state.counted = true;
+        state.changed = false;
+        for (CauldronListener listener : listeners) {
+            listener.onPagedIn(pos);
+        }
+    }
+
+    /**
+     * 换出上次保存之后没有修改过的锅，其密度计数保留，之后可以再次读入
+     * @param shouldEvict 判断该位置的锅是否应换出，例如所在区块已卸载
+     * @return 被换出的锅的打包坐标
+     */
+    public List<Long> evictIf(LongPredicate shouldEvict) {
+        List<Long> evicted = new ArrayList<>();
+        Iterator<Map.Entry<Long, CauldronState>> iterator = states.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, CauldronState> entry = iterator.next();
+            if (!entry.getValue().changed && shouldEvict.test(entry.getKey())) {
+                iterator.remove();
+                entry.getValue().unbind();
+                evicted.add(entry.getKey());
+            }
+        }
+        for (long pos : evicted) {
+            for (CauldronListener listener : listeners) {
+                listener.onPagedOut(pos);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 取出上次调用之后被修改过的锅并清除修改标记，用于只把变化写入映射文件
+     * @return 被修改过的锅的打包坐标，其中可能有效果已清空的锅
+     */
+    public List<Long> takeChanged() {
+        List<Long> changed = new ArrayList<>();
+        for (Map.Entry<Long, CauldronState> entry : states.entrySet()) {
+            if (entry.getValue().changed) {
+                entry.getValue().changed = false;
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 移除指定位置的锅状态（例如方块被破坏）
+     * @return 被移除的锅状态，如果不存在则返回null
+     */
+    public CauldronState remove(long pos) {
+        CauldronState removed = states.remove(pos);
+        if (removed != null) {
+            uncount(pos, removed);
+            removed.unbind();
+            fireRemoved(pos);
+        }
+        return removed;
+    }
+
+    /**
+     * 玩家盛出锅中的效果并移除锅状态
+     * @return 被盛出的锅状态，如果不存在则返回null
+     */
+    public CauldronState drain(long pos) {
+        CauldronState drained = states.remove(pos);
+        if (drained != null) {
+            uncount(pos, drained);
+            drained.unbind();
+            for (CauldronListener listener : listeners) {
+                listener.onDrained(pos);
+            }
+            fireRemoved(pos);
+        }
+        return drained;
+    }
+
+    /**
+     * 执行一次自然衰减，移除效果列表为空的锅
+     * @return 本次是否有任何锅状态发生变化
+     */
+    public boolean tick() {
+        if (states.isEmpty()) {
+            return false;
+        }
+        List<Long> emptied = null;
+        Iterator<Map.Entry<Long, CauldronState>> iterator = states.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, CauldronState> entry = iterator.next();
+            CauldronState state = entry.getValue();
+            state.decay();
+            if (state.isEmpty()) {
+                iterator.remove();
+                uncount(entry.getKey(), state);
+                state.unbind();
+                if (emptied == null) {
+                    emptied = new ArrayList<>();
+                }
+                emptied.add(entry.getKey());
+            }
+        }
+        // 遍历结束后再发布事件，避免监听器在迭代过程中读取到不一致的表
+        if (emptied != null) {
+            for (long pos : emptied) {
+                for (CauldronListener listener : listeners) {
+                    listener.onBecameEmpty(pos);
+                }
+                fireRemoved(pos);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找已经失效的锅，例如方块被爆炸、活塞、指令等方式移除而没有触发破坏事件
+     * 只查找不移除，调用者可以在移除前先结算相关的会话
+     * @param isValid 判断该位置是否仍然是有效的锅，无法判断（例如区块未加载）时应返回true
+     * @return 失效锅的打包坐标
+     */
+    public List<Long> findStale(LongPredicate isValid) {
+        List<Long> stale = new ArrayList<>();
+        for (long pos : states.keySet()) {
+            if (!isValid.test(pos)) {
+                stale.add(pos);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * 检查在指定位置新建一个锅是否仍在配额内，已存在的锅总是允许
+     * @param maxPerChunk 每区块上限，0表示不限制
+     * @param maxPerRegion 每区域上限，0表示不限制
+     */
+    public boolean allowsNew(long pos, int maxPerChunk, int maxPerRegion) {
+        return states.containsKey(pos) || density.allows(pos, maxPerChunk, maxPerRegion);
+    }
+
+    public DensityIndex density() {
+        return density;
+    }
+
+    /**
+     * 估算整张表占用的堆内存字节数，用于观察长时间运行时的内存是否有界
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (CauldronState state : states.values()) {
+            bytes += ENTRY_BYTES + state.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public boolean isEmpty() {
+        return states.isEmpty();
+    }
+
+    /**
+     * 获取所有锅的只读视图，键为打包坐标
+     */
+    public Map<Long, CauldronState> view() {
+        return Collections.unmodifiableMap(states);
+    }
+
+    public Collection<CauldronState> states() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
+    /**
+     * 由绑定到本表的CauldronState在效果累加后调用，第一次累加时计入密度索引
+     */
+    void fireAccumulated(CauldronState state, long pos, int effectId, int level, int time) {
+        if (!state.counted) {
+            state.counted = true;
+            density.add(pos);
+        }
+        for (CauldronListener listener : listeners) {
+            listener.onEffectAccumulated(pos, effectId, level, time);
+        }
+    }
+
+    private void uncount(long pos, CauldronState state) {
+        if (state.counted) {
+            density.remove(pos);
+        }
+    }
+
+    private void fireRemoved(long pos) {
+        for (CauldronListener listener : listeners) {
+            listener.onRemoved(pos);
+        }
+    }
+}
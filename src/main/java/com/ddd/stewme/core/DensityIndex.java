@@ -0,0 +1,117 @@
+package com.ddd.stewme.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按区块和区域统计活跃炼药锅数量，用于配额检查和密度排行
+ * 区块键与原版ChunkPos.asLong一致，区域为32x32区块（与region文件相同）
+ */
+public class DensityIndex {
+    /** 一个区域包含的区块数量的位移（32x32区块） */
+    public static final int REGION_SHIFT = 5;
+
+    private final Map<Long, Integer> chunkCounts = new HashMap<>();
+    private final Map<Long, Integer> regionCounts = new HashMap<>();
+
+    /**
+     * 记录一个新的锅
+     */
+    public void add(long pos) {
+        chunkCounts.merge(chunkKeyOf(pos), 1, Integer::sum);
+        regionCounts.merge(regionKeyOf(pos), 1, Integer::sum);
+    }
+
+    /**
+     * 移除一个锅的记录
+     */
+    public void remove(long pos) {
+        decrement(chunkCounts, chunkKeyOf(pos));
+        decrement(regionCounts, regionKeyOf(pos));
+    }
+
+    public void clear() {
+        chunkCounts.clear();
+        regionCounts.clear();
+    }
+
+    /**
+     * 获取指定位置所在区块的锅数量
+     */
+    public int chunkCountAt(long pos) {
+        return chunkCounts.getOrDefault(chunkKeyOf(pos), 0);
+    }
+
+    /**
+     * 获取指定位置所在区域的锅数量
+     */
+    public int regionCountAt(long pos) {
+        return regionCounts.getOrDefault(regionKeyOf(pos), 0);
+    }
+
+    /**
+     * 检查在指定位置新建一个锅是否仍在配额内
+     * @param maxPerChunk 每区块上限，0表示不限制
+     * @param maxPerRegion 每区域上限，0表示不限制
+     */
+    public boolean allows(long pos, int maxPerChunk, int maxPerRegion) {
+        if (maxPerChunk > 0 && chunkCountAt(pos) >= maxPerChunk) {
+            return false;
+        }
+        return maxPerRegion <= 0 || regionCountAt(pos) < maxPerRegion;
+    }
+
+    /**
+     * 获取锅数量最多的若干区块
+     * @param limit 返回的最大条目数
+     * @return 按数量降序排列的区块键与数量
+     */
+    public List<Map.Entry<Long, Integer>> densestChunks(int limit) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(chunkCounts.entrySet());
+        entries.sort(Map.Entry.<Long, Integer>comparingByValue().reversed());
+        List<Map.Entry<Long, Integer>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            result.add(Map.entry(entries.get(i).getKey(), entries.get(i).getValue()));
+        }
+        return result;
+    }
+
+    public int chunkCount() {
+        return chunkCounts.size();
+    }
+
+    /**
+     * 区块键，位布局与原版ChunkPos.asLong一致
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+    }
+
+    /**
+     * 打包坐标所在区块的区块键
+     */
+    public static long chunkKeyOf(long pos) {
+        return chunkKey(PackedPos.x(pos) >> 4, PackedPos.z(pos) >> 4);
+    }
+
+    /**
+     * 打包坐标所在区域的区域键，布局与区块键相同
+     */
+    public static long regionKeyOf(long pos) {
+        return chunkKey(PackedPos.x(pos) >> 4 >> REGION_SHIFT, PackedPos.z(pos) >> 4 >> REGION_SHIFT);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return (int) (chunkKey & 0xFFFFFFFFL);
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return (int) (chunkKey >>> 32 & 0xFFFFFFFFL);
+    }
+
+    private static void decrement(Map<Long, Integer> counts, long key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+}
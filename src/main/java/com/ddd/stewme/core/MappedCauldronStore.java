@@ -0,0 +1,896 @@
+package com.ddd.stewme.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的定长记录锅存储，每个维度一个文件
+ * 文件本身就是一张开放寻址（线性探测）的哈希表，键为打包坐标+页号，打开文件即可按需读取记录，无需解析NBT
+ * 探测起点按锅所在的区块计算，同一区块的锅位于同一段探测序列中，区块加载时只需读取这一段
+ * 每条记录最多保存8个效果槽位，效果更多的锅使用多页记录
+ * 记录同时保存写入时已经执行到的自然衰减时间，读取时补上之后的衰减，未加载的锅不需要逐次衰减
+ *
+ * 运行时注册表ID在游戏或模组列表变化后可能改变，记录中不保存运行时ID，
+ * 而是保存效果在调色板中的下标；调色板按下标顺序保存效果注册名，存放在同目录的.palette文件中，只追加不修改，
+ * 打开时按注册名重新映射为运行时ID，已不存在的效果被丢弃
+ *
+ * 写入顺序保证崩溃安全：
+ * 1. 调色板新增条目时先写入临时文件并落盘后再替换，并同步所在目录，之后才写入引用该条目的记录
+ * 2. 记录不在原位置覆盖：每次写入一个锅时以新的版本号把所有页写入空闲槽位，旧版本的记录保留到落盘之后才删除；
+ *    先写记录内容和CRC，最后写占用标记
+ * 3. 打开时清除头部的正常关闭标记，正常关闭时才重新写入；未正常关闭的文件在打开时会重新扫描：
+ *    丢弃CRC不匹配（写入被撕裂）的记录，每个锅保留页数齐全的最新版本，删除其他版本和孤立页，
+ *    因此崩溃时正在写入的锅会回到上一个完整的版本，而不会丢失
+ * 4. 扩容时新表以普通写入方式写入临时文件并落盘，再原子替换原文件并同步所在目录，替换成功后才切换映射；
+ *    部分平台（如Windows）不允许替换仍被映射的文件，此时原文件和映射保持不变，扩容失败并抛出IOException
+ */
+public final class MappedCauldronStore implements Closeable {
+    private static final int MAGIC = 0x53544557; // "STEW"
+    private static final int VERSION = 4;
+
+    // 头部布局
+    static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_USED = 16;
+    private static final int H_TOMBSTONES = 20;
+    private static final int H_CLEAN = 24;
+    private static final int H_GENERATION = 32;
+
+    // 记录布局，测试中用于构造写入被撕裂的记录
+    public static final int SLOTS_PER_RECORD = 8;
+    private static final int SLOT_SIZE = 12;
+    public static final int RECORD_SIZE = 32 + SLOTS_PER_RECORD * SLOT_SIZE;
+    static final int R_FLAG = 0;
+    static final int R_PAGE = 1;
+    private static final int R_SLOT_COUNT = 2;
+    private static final int R_PAGE_COUNT = 3;
+    private static final int R_CRC = 4;
+    static final int R_POS = 8;
+    static final int R_GENERATION = 16;
+    private static final int R_DECAY_TICK = 24;
+    static final int R_SLOTS = 32;
+
+    static final byte FLAG_EMPTY = 0;
+    static final byte FLAG_USED = 1;
+    static final byte FLAG_TOMBSTONE = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE);
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path file;
+    private final EffectNames names;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int used;
+    private int tombstones;
+    private int cauldrons;
+    // 最近一次写入使用的版本号，同一个锅的新版本总是大于旧版本
+    private long generation;
+    // 已被新版本取代、等待新版本落盘后删除的旧记录槽位，查找时视为不存在
+    private final BitSet superseded = new BitSet();
+
+    // 调色板：下标 -> 注册名，以及两个方向的ID映射，运行时ID为-1表示该效果已不存在
+    private final List<String> palette = new ArrayList<>();
+    private final List<Integer> paletteRuntimeIds = new ArrayList<>();
+    private final Map<Integer, Integer> storedIds = new HashMap<>();
+
+    private MappedCauldronStore(Path file, EffectNames names) {
+        this.file = file;
+        this.names = names;
+    }
+
+    /**
+     * 打开或创建存储文件
+     * @param file 存储文件路径
+     * @param names 效果运行时ID与注册名之间的转换
+     * @return 已打开的存储
+     * @throws IOException 文件无法读写或格式不正确时抛出
+     */
+    public static MappedCauldronStore open(Path file, EffectNames names) throws IOException {
+        // 上次扩容或写调色板中途崩溃留下的临时文件，原文件仍然完整
+        Files.deleteIfExists(tempFile(file));
+        Files.deleteIfExists(tempFile(paletteFile(file)));
+
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return create(file, 0, names);
+        }
+        MappedCauldronStore store = new MappedCauldronStore(file, names);
+        store.loadPalette();
+        store.mapExisting();
+        return store;
+    }
+
+    /**
+     * 丢弃已有的文件，按预计的记录数量创建新的存储，写入这些记录时不需要扩容
+     * 用于从其他后端转换数据
+     * @param file 存储文件路径
+     * @param expectedRecords 预计的记录数量，见{@link #recordsFor(CauldronTable)}
+     * @param names 效果运行时ID与注册名之间的转换
+     * @return 已打开的存储
+     * @throws IOException 文件无法读写时抛出
+     */
+    public static MappedCauldronStore create(Path file, int expectedRecords, EffectNames names) throws IOException {
+        Files.deleteIfExists(tempFile(file));
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(paletteFile(file));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        MappedCauldronStore store = new MappedCauldronStore(file, names);
+        store.map(file, capacityFor(expectedRecords));
+        store.writeHeader(false);
+        store.buffer.force();
+        syncDirectory(file);
+        return store;
+    }
+
+    /**
+     * 计算锅表写入存储需要的记录数量
+     */
+    public static int recordsFor(CauldronTable table) {
+        int records = 0;
+        for (CauldronState state : table.states()) {
+            records += pagesFor(state.size());
+        }
+        return records;
+    }
+
+    /**
+     * 存储文件是否存在
+     */
+    public static boolean exists(Path file) {
+        return Files.exists(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 存储中的锅数量
+     */
+    public int size() {
+        return cauldrons;
+    }
+
+    /**
+     * 按需读取一个锅的状态，补上写入之后的自然衰减，已耗尽或已不存在的效果不会被读出
+     * @param pos 打包坐标
+     * @param now 锅表实际执行过的最后一次自然衰减的游戏时间
+     * @return 锅状态（效果可能已全部耗尽），不存在时返回null
+     */
+    public CauldronState get(long pos, long now) {
+        int slot = find(pos, 0);
+        if (slot < 0) {
+            return null;
+        }
+        CauldronState state = new CauldronState();
+        int offset = offset(slot);
+        int pageCount = buffer.get(offset + R_PAGE_COUNT) & 0xFF;
+        int decays = BrewingRules.decaysBetween(buffer.getLong(offset + R_DECAY_TICK), now);
+        readSlots(slot, decays, state);
+        for (int page = 1; page < pageCount; page++) {
+            int pageSlot = find(pos, page);
+            if (pageSlot >= 0) {
+                readSlots(pageSlot, decays, state);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 读取一个区块中的所有锅，只扫描该区块所在的探测序列
+     * 回调中可以删除记录
+     * @param chunkKey 区块键，见{@link DensityIndex#chunkKey(int, int)}
+     * @param now 锅表实际执行过的最后一次自然衰减的游戏时间
+     */
+    public void forEachInChunk(long chunkKey, long now, BiConsumer<Long, CauldronState> consumer) {
+        List<Long> positions = new ArrayList<>();
+        int mask = capacity - 1;
+        int slot = mix(chunkKey) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            byte flag = buffer.get(offset + R_FLAG);
+            if (flag == FLAG_EMPTY) {
+                break;
+            }
+            if (flag == FLAG_USED && buffer.get(offset + R_PAGE) == 0 && !superseded.get(slot)) {
+                long pos = buffer.getLong(offset + R_POS);
+                if (DensityIndex.chunkKeyOf(pos) == chunkKey) {
+                    positions.add(pos);
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        for (long pos : positions) {
+            consumer.accept(pos, get(pos, now));
+        }
+    }
+
+    /**
+     * 写入一个锅的状态：以新的版本号写入所有页，旧版本在下一次落盘之后才删除
+     * 没有注册名的效果不会被写入
+     * @param pos 打包坐标
+     * @param state 锅状态
+     * @param decayTick 状态中的时间已经执行到的自然衰减的游戏时间
+     * @throws IOException 写入调色板或扩容失败时抛出
+     */
+    public void put(long pos, CauldronState state, long decayTick) throws IOException {
+        // 先把效果转换为调色板下标，新增的调色板条目在写入记录之前落盘
+        int[] ids = new int[state.size()];
+        int[] levels = new int[state.size()];
+        int[] times = new int[state.size()];
+        int count = 0;
+        for (int i = 0; i < state.size(); i++) {
+            int storedId = storedIdOf(state.effectIdAt(i));
+            if (storedId >= 0) {
+                ids[count] = storedId;
+                levels[count] = state.levelAt(i);
+                times[count] = state.timeAt(i);
+                count++;
+            }
+        }
+
+        int pageCount = pagesFor(count);
+        if (pageCount > 0xFF) {
+            throw new IllegalArgumentException("Too many effects in one cauldron: " + count);
+        }
+        // 新旧版本同时存在，需要为所有新页预留空间；扩容会移动记录，之后再查找旧版本
+        ensureCapacity(pageCount);
+        int head = find(pos, 0);
+
+        long version = ++generation;
+        // 先写后续页，最后写第0页
+        for (int page = pageCount - 1; page >= 0; page--) {
+            writePage(pos, page, pageCount, version, decayTick, ids, levels, times, count);
+        }
+        if (head < 0) {
+            cauldrons++;
+            return;
+        }
+        // 旧版本的所有页在新版本落盘之后删除
+        long oldVersion = buffer.getLong(offset(head) + R_GENERATION);
+        int oldPageCount = buffer.get(offset(head) + R_PAGE_COUNT) & 0xFF;
+        superseded.set(head);
+        for (int page = 1; page < oldPageCount; page++) {
+            int pageSlot = findVersion(pos, page, oldVersion);
+            if (pageSlot >= 0) {
+                superseded.set(pageSlot);
+            }
+        }
+    }
+
+    /**
+     * 删除一个锅的所有记录
+     * @param pos 打包坐标
+     * @return 是否存在并被删除
+     */
+    public boolean remove(long pos) {
+        int head = find(pos, 0);
+        if (head < 0) {
+            return false;
+        }
+        int pageCount = buffer.get(offset(head) + R_PAGE_COUNT) & 0xFF;
+        // 先删除第0页，之后的页即使残留也不会被读取，恢复时会被清理
+        removeSlot(head);
+        for (int page = 1; page < pageCount; page++) {
+            int pageSlot = find(pos, page);
+            if (pageSlot >= 0) {
+                removeSlot(pageSlot);
+            }
+        }
+        // 尚未删除的旧版本一并删除，否则会在落盘前被重新读出
+        for (int slot = superseded.nextSetBit(0); slot >= 0; slot = superseded.nextSetBit(slot + 1)) {
+            if (buffer.getLong(offset(slot) + R_POS) == pos) {
+                removeSlot(slot);
+            }
+        }
+        cauldrons--;
+        return true;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.put(offset(slot) + R_FLAG, FLAG_EMPTY);
+        }
+        used = 0;
+        tombstones = 0;
+        cauldrons = 0;
+        superseded.clear();
+    }
+
+    /**
+     * 顺序扫描所有锅，用于统计、转换格式或改为全部保存在内存中
+     * 回调中不能修改存储
+     * @param now 锅表实际执行过的最后一次自然衰减的游戏时间
+     */
+    public void forEach(long now, BiConsumer<Long, CauldronState> consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            if (buffer.get(offset + R_FLAG) == FLAG_USED && buffer.get(offset + R_PAGE) == 0 && !superseded.get(slot)) {
+                long pos = buffer.getLong(offset + R_POS);
+                consumer.accept(pos, get(pos, now));
+            }
+        }
+    }
+
+    /**
+     * 将所有记录加载到锅表中，效果已全部耗尽或不存在的锅从文件中删除
+     * @param now 锅表实际执行过的最后一次自然衰减的游戏时间
+     */
+    public void loadInto(CauldronTable table, long now) {
+        List<Long> empty = new ArrayList<>();
+        forEach(now, (pos, state) -> {
+            if (state.isEmpty()) {
+                empty.add(pos);
+            } else {
+                table.put(pos, state);
+            }
+        });
+        for (long pos : empty) {
+            remove(pos);
+        }
+    }
+
+    /**
+     * 强制将已修改的记录和头部写入磁盘
+     * 新版本的记录落盘之后才删除被取代的旧版本；头部中的计数只是提示，恢复时会重新统计
+     */
+    public void flush() {
+        releaseSuperseded();
+        writeHeader(false);
+        buffer.force();
+    }
+
+    /**
+     * 落盘并写入正常关闭标记
+     * 映射在缓冲区被回收时才会释放
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        releaseSuperseded();
+        writeHeader(true);
+        buffer.force();
+        buffer = null;
+        channel.close();
+        channel = null;
+    }
+
+    private void mapExisting() throws IOException {
+        try (FileChannel probe = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = probe.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                    || header.getInt(H_RECORD_SIZE) != RECORD_SIZE) {
+                throw new IOException("Not a cauldron store: " + file);
+            }
+            capacity = header.getInt(H_CAPACITY);
+            if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                    || probe.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                throw new IOException("Corrupt cauldron store header: " + file);
+            }
+            boolean clean = header.get(H_CLEAN) == 1;
+            map(file, capacity);
+            if (clean) {
+                used = buffer.getInt(H_USED);
+                tombstones = buffer.getInt(H_TOMBSTONES);
+                generation = buffer.getLong(H_GENERATION);
+                cauldrons = countCauldrons();
+            } else {
+                recover();
+            }
+        }
+        // 运行期间标记为未正常关闭
+        writeHeader(false);
+        buffer.force();
+    }
+
+    /**
+     * 映射文件，成功后才替换当前的通道和缓冲区
+     */
+    private void map(Path target, int newCapacity) throws IOException {
+        FileChannel newChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            throw e;
+        }
+        channel = newChannel;
+        capacity = newCapacity;
+    }
+
+    /**
+     * 未正常关闭时的恢复：丢弃CRC不匹配的记录，每个锅只保留页数齐全的最新版本，重新统计计数
+     * 按探测序列查找同一个锅的各个版本，不需要把整个文件读入内存
+     */
+    private void recover() {
+        generation = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            if (buffer.get(offset + R_FLAG) != FLAG_USED) {
+                continue;
+            }
+            if (buffer.getInt(offset + R_CRC) != checksum(buffer, offset)) {
+                // 写入被撕裂
+                buffer.put(offset + R_FLAG, FLAG_TOMBSTONE);
+            } else {
+                generation = Math.max(generation, buffer.getLong(offset + R_GENERATION));
+            }
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            if (buffer.get(offset + R_FLAG) == FLAG_USED
+                    && buffer.getLong(offset + R_GENERATION) != survivingVersion(buffer.getLong(offset + R_POS))) {
+                // 未完成的新版本、已被取代的旧版本或孤立页
+                buffer.put(offset + R_FLAG, FLAG_TOMBSTONE);
+            }
+        }
+        used = 0;
+        tombstones = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            byte flag = buffer.get(offset(slot) + R_FLAG);
+            if (flag == FLAG_USED) {
+                used++;
+            } else if (flag == FLAG_TOMBSTONE) {
+                tombstones++;
+            }
+        }
+        cauldrons = countCauldrons();
+    }
+
+    /**
+     * 恢复时查找一个锅页数齐全的最新版本
+     * @return 版本号，没有完整的版本时返回-1
+     */
+    private long survivingVersion(long pos) {
+        long newest = -1;
+        int mask = capacity - 1;
+        int slot = home(pos) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            byte flag = buffer.get(offset + R_FLAG);
+            if (flag == FLAG_EMPTY) {
+                break;
+            }
+            if (flag == FLAG_USED && buffer.getLong(offset + R_POS) == pos && buffer.get(offset + R_PAGE) == 0) {
+                long version = buffer.getLong(offset + R_GENERATION);
+                if (version > newest && isComplete(pos, version, buffer.get(offset + R_PAGE_COUNT) & 0xFF)) {
+                    newest = version;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return newest;
+    }
+
+    private boolean isComplete(long pos, long version, int pageCount) {
+        for (int page = 1; page < pageCount; page++) {
+            if (findVersion(pos, page, version) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countCauldrons() {
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            if (buffer.get(offset + R_FLAG) == FLAG_USED && buffer.get(offset + R_PAGE) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把一页写入空闲槽位，不覆盖任何已有记录
+     */
+    private void writePage(long pos, int page, int pageCount, long version, long decayTick,
+                           int[] ids, int[] levels, int[] times, int size) {
+        int slot = findInsertSlot(pos);
+        int offset = offset(slot);
+        if (buffer.get(offset + R_FLAG) == FLAG_TOMBSTONE) {
+            tombstones--;
+        }
+
+        int first = page * SLOTS_PER_RECORD;
+        int count = Math.max(0, Math.min(SLOTS_PER_RECORD, size - first));
+        buffer.put(offset + R_PAGE, (byte) page);
+        buffer.put(offset + R_SLOT_COUNT, (byte) count);
+        buffer.put(offset + R_PAGE_COUNT, (byte) pageCount);
+        buffer.putLong(offset + R_POS, pos);
+        buffer.putLong(offset + R_GENERATION, version);
+        buffer.putLong(offset + R_DECAY_TICK, decayTick);
+        for (int i = 0; i < SLOTS_PER_RECORD; i++) {
+            int slotOffset = offset + R_SLOTS + i * SLOT_SIZE;
+            if (i < count) {
+                buffer.putInt(slotOffset, ids[first + i]);
+                buffer.putInt(slotOffset + 4, levels[first + i]);
+                buffer.putInt(slotOffset + 8, times[first + i]);
+            } else {
+                buffer.putInt(slotOffset, 0);
+                buffer.putInt(slotOffset + 4, 0);
+                buffer.putInt(slotOffset + 8, 0);
+            }
+        }
+        buffer.putInt(offset + R_CRC, checksum(buffer, offset));
+        // 占用标记最后写入
+        buffer.put(offset + R_FLAG, FLAG_USED);
+        used++;
+    }
+
+    private void removeSlot(int slot) {
+        buffer.put(offset(slot) + R_FLAG, FLAG_TOMBSTONE);
+        superseded.clear(slot);
+        used--;
+        tombstones++;
+    }
+
+    /**
+     * 先把新版本的记录落盘，再删除被取代的旧版本
+     */
+    private void releaseSuperseded() {
+        buffer.force();
+        if (superseded.isEmpty()) {
+            return;
+        }
+        for (int slot = superseded.nextSetBit(0); slot >= 0; slot = superseded.nextSetBit(slot + 1)) {
+            buffer.put(offset(slot) + R_FLAG, FLAG_TOMBSTONE);
+            used--;
+            tombstones++;
+        }
+        superseded.clear();
+        buffer.force();
+    }
+
+    /**
+     * 读取一页中的效果，每次衰减减少1tick，与锅表中的逐次衰减结果一致
+     */
+    private void readSlots(int slot, int decays, CauldronState state) {
+        int offset = offset(slot);
+        int count = buffer.get(offset + R_SLOT_COUNT) & 0xFF;
+        for (int i = 0; i < Math.min(count, SLOTS_PER_RECORD); i++) {
+            int slotOffset = offset + R_SLOTS + i * SLOT_SIZE;
+            int effectId = runtimeIdOf(buffer.getInt(slotOffset));
+            long time = buffer.getInt(slotOffset + 8) - (long) decays * BrewingRules.DECAY_AMOUNT;
+            if (effectId >= 0 && time > 0) {
+                state.addEffect(effectId, buffer.getInt(slotOffset + 4), (int) time);
+            }
+        }
+    }
+
+    /**
+     * 运行时ID转换为调色板下标，必要时追加调色板条目并落盘
+     * @return 调色板下标，效果没有注册名时返回-1
+     */
+    private int storedIdOf(int effectId) throws IOException {
+        Integer storedId = storedIds.get(effectId);
+        if (storedId != null) {
+            return storedId;
+        }
+        String name = names.nameOf(effectId);
+        if (name == null) {
+            return -1;
+        }
+        int index = palette.indexOf(name);
+        if (index < 0) {
+            palette.add(name);
+            paletteRuntimeIds.add(effectId);
+            try {
+                writePalette();
+            } catch (IOException e) {
+                palette.remove(palette.size() - 1);
+                paletteRuntimeIds.remove(paletteRuntimeIds.size() - 1);
+                throw e;
+            }
+            index = palette.size() - 1;
+        } else {
+            paletteRuntimeIds.set(index, effectId);
+        }
+        storedIds.put(effectId, index);
+        return index;
+    }
+
+    /**
+     * 调色板下标转换为运行时ID
+     * @return 运行时ID，效果已不存在或下标无效时返回-1
+     */
+    private int runtimeIdOf(int storedId) {
+        return storedId >= 0 && storedId < paletteRuntimeIds.size() ? paletteRuntimeIds.get(storedId) : -1;
+    }
+
+    private void loadPalette() throws IOException {
+        Path paletteFile = paletteFile(file);
+        if (!Files.exists(paletteFile)) {
+            return;
+        }
+        for (String name : Files.readAllLines(paletteFile, StandardCharsets.UTF_8)) {
+            int effectId = names.idOf(name);
+            palette.add(name);
+            paletteRuntimeIds.add(effectId);
+            if (effectId >= 0) {
+                storedIds.putIfAbsent(effectId, palette.size() - 1);
+            }
+        }
+    }
+
+    private void writePalette() throws IOException {
+        Path paletteFile = paletteFile(file);
+        Path temp = tempFile(paletteFile);
+        byte[] content = (String.join("\n", palette) + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(content);
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+            out.force(true);
+        }
+        Files.move(temp, paletteFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(paletteFile);
+    }
+
+    /**
+     * 查找记录当前版本所在的槽位，已被取代的旧版本视为不存在
+     * @return 槽位，不存在时返回-1
+     */
+    private int find(long pos, int page) {
+        int mask = capacity - 1;
+        int slot = home(pos) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            byte flag = buffer.get(offset + R_FLAG);
+            if (flag == FLAG_EMPTY) {
+                return -1;
+            }
+            if (flag == FLAG_USED && buffer.getLong(offset + R_POS) == pos
+                    && (buffer.get(offset + R_PAGE) & 0xFF) == page && !superseded.get(slot)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找指定版本的一页所在的槽位
+     * @return 槽位，不存在时返回-1
+     */
+    private int findVersion(long pos, int page, long version) {
+        int mask = capacity - 1;
+        int slot = home(pos) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int offset = offset(slot);
+            byte flag = buffer.get(offset + R_FLAG);
+            if (flag == FLAG_EMPTY) {
+                return -1;
+            }
+            if (flag == FLAG_USED && buffer.getLong(offset + R_POS) == pos
+                    && (buffer.get(offset + R_PAGE) & 0xFF) == page && buffer.getLong(offset + R_GENERATION) == version) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找可插入的槽位（空槽或墓碑），调用前需确认容量足够；被取代的旧版本在删除前仍占用槽位
+     */
+    private int findInsertSlot(long pos) {
+        int mask = capacity - 1;
+        int slot = home(pos) & mask;
+        while (buffer.get(offset(slot) + R_FLAG) == FLAG_USED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 保证再插入若干条记录后负载仍低于上限，必要时扩容或清理墓碑
+     */
+    private void ensureCapacity(int additional) throws IOException {
+        if (used + tombstones + additional <= capacity * MAX_LOAD) {
+            return;
+        }
+        int newCapacity = capacity;
+        while (used + additional > newCapacity * MAX_LOAD / 2 && newCapacity < MAX_CAPACITY) {
+            newCapacity <<= 1;
+        }
+        if (used + additional > newCapacity * MAX_LOAD) {
+            throw new IOException("Cauldron store is full: " + file);
+        }
+        rehash(newCapacity);
+    }
+
+    /**
+     * 将所有有效记录写入新文件，落盘后原子替换原文件
+     * 新文件不做映射，写入后在任何平台上都可以移动或删除；原文件的映射在替换成功后才释放
+     */
+    private void rehash(int newCapacity) throws IOException {
+        // 只复制当前版本的记录
+        releaseSuperseded();
+        Path temp = tempFile(file);
+        Files.deleteIfExists(temp);
+
+        int newUsed = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+            // 先写最后一个字节，文件中未写入的部分均为0，即空槽
+            out.write(ByteBuffer.allocate(1), size - 1);
+            BitSet occupied = new BitSet(newCapacity);
+            int mask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = offset(slot);
+                if (buffer.get(offset + R_FLAG) == FLAG_USED) {
+                    long pos = buffer.getLong(offset + R_POS);
+                    int target = home(pos) & mask;
+                    while (occupied.get(target)) {
+                        target = (target + 1) & mask;
+                    }
+                    occupied.set(target);
+                    writeFully(out, buffer.slice(offset, RECORD_SIZE), HEADER_SIZE + (long) target * RECORD_SIZE);
+                    newUsed++;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            writeHeader(header, newCapacity, newUsed, 0, generation, false);
+            writeFully(out, header, 0);
+            out.force(true);
+        }
+
+        buffer.force();
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // 原文件和映射保持不变，存储仍可按原容量使用
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new IOException("Cannot replace mapped cauldron store to grow it: " + file, e);
+        }
+        syncDirectory(file);
+
+        FileChannel oldChannel = channel;
+        map(file, newCapacity);
+        oldChannel.close();
+        used = newUsed;
+        tombstones = 0;
+        writeHeader(false);
+        buffer.force();
+    }
+
+    private void writeHeader(boolean clean) {
+        writeHeader(buffer, capacity, used, tombstones, generation, clean);
+    }
+
+    private static void writeHeader(ByteBuffer target, int capacity, int used, int tombstones, long generation, boolean clean) {
+        target.putInt(H_MAGIC, MAGIC);
+        target.putInt(H_VERSION, VERSION);
+        target.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        target.putInt(H_CAPACITY, capacity);
+        target.putInt(H_USED, used);
+        target.putInt(H_TOMBSTONES, tombstones);
+        target.put(H_CLEAN, (byte) (clean ? 1 : 0));
+        target.putLong(H_GENERATION, generation);
+    }
+
+    /**
+     * 替换或创建文件后同步所在目录，保证目录项本身也已落盘
+     * 部分平台（如Windows）不能以读方式打开目录，此时跳过，由文件系统自行保证
+     */
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 平台不支持同步目录
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += out.write(data, position);
+        }
+    }
+
+    private static int checksum(ByteBuffer source, int offset) {
+        CRC32 crc = new CRC32();
+        for (int i = R_PAGE; i < R_CRC; i++) {
+            crc.update(source.get(offset + i));
+        }
+        crc.update(source.slice(offset + R_POS, RECORD_SIZE - R_POS));
+        return (int) crc.getValue();
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static int pagesFor(int effects) {
+        return Math.max(1, (effects + SLOTS_PER_RECORD - 1) / SLOTS_PER_RECORD);
+    }
+
+    /**
+     * 写入预计数量的记录后负载不超过扩容后的目标负载
+     */
+    private static int capacityFor(int records) {
+        int capacity = INITIAL_CAPACITY;
+        while (records > capacity * MAX_LOAD / 2 && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * 记录的探测起点：同一区块中所有锅的所有页从同一位置开始探测
+     */
+    private static int home(long pos) {
+        return mix(DensityIndex.chunkKeyOf(pos));
+    }
+
+    private static int mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static Path tempFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static Path paletteFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".palette");
+    }
+
+    /**
+     * 效果运行时ID与注册名之间的转换，由游戏侧根据注册表提供
+     */
+    public interface EffectNames {
+        /**
+         * @return 效果的注册名，未注册时返回null
+         */
+        String nameOf(int effectId);
+
+        /**
+         * @return 注册名对应的运行时ID，效果已不存在时返回-1
+         */
+        int idOf(String name);
+    }
+}
@@ -0,0 +1,11 @@
+package com.ddd.stewme.core;
+
+/**
+ * 区块或区域的锅数量超过配额时的处理方式
+ */
+public enum OverLimitBehavior {
+    /** 拒绝创建新的锅数据 */
+    REFUSE,
+    /** 允许创建，但超额区块每轮最多产生每区块上限组粒子，超额区域最多产生每区域上限组粒子 */
+    POOL
+}
@@ -0,0 +1,35 @@
+package com.ddd.stewme.core;
+
+/**
+ * 方块坐标与long之间的打包转换
+ * 位布局与原版BlockPos.asLong一致（X 26位，Z 26位，Y 12位），两者可互换使用
+ */
+public final class PackedPos {
+    private static final int X_BITS = 26;
+    private static final int Z_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long X_MASK = (1L << X_BITS) - 1L;
+    private static final long Y_MASK = (1L << Y_BITS) - 1L;
+    private static final long Z_MASK = (1L << Z_BITS) - 1L;
+    private static final int Z_OFFSET = Y_BITS;
+    private static final int X_OFFSET = Y_BITS + Z_BITS;
+
+    private PackedPos() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) x & X_MASK) << X_OFFSET | ((long) y & Y_MASK) | ((long) z & Z_MASK) << Z_OFFSET;
+    }
+
+    public static int x(long packed) {
+        return (int) (packed << (64 - X_OFFSET - X_BITS) >> (64 - X_BITS));
+    }
+
+    public static int y(long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int z(long packed) {
+        return (int) (packed << (64 - Z_OFFSET - Z_BITS) >> (64 - Z_BITS));
+    }
+}
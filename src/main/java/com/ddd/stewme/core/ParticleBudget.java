@@ -0,0 +1,51 @@
+package com.ddd.stewme.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 合并模式下一轮粒子效果的配额
+ * 超额区块本轮最多产生每区块上限组粒子，超额区域最多产生每区域上限组粒子，
+ * 未超额的区块和区域不受限制，因此锅数量越过上限时粒子数量不会骤减
+ */
+public class ParticleBudget {
+    private final DensityIndex density;
+    private final int maxPerChunk;
+    private final int maxPerRegion;
+    private final Map<Long, Integer> chunkGroups = new HashMap<>();
+    private final Map<Long, Integer> regionGroups = new HashMap<>();
+
+    /**
+     * @param density 锅的区块和区域计数
+     * @param maxPerChunk 每区块上限，0表示不限制
+     * @param maxPerRegion 每区域上限，0表示不限制
+     */
+    public ParticleBudget(DensityIndex density, int maxPerChunk, int maxPerRegion) {
+        this.density = density;
+        this.maxPerChunk = maxPerChunk;
+        this.maxPerRegion = maxPerRegion;
+    }
+
+    /**
+     * 检查指定位置的锅本轮是否还能产生粒子，可以时计入所在超额区块和区域的配额
+     */
+    public boolean tryEmit(long pos) {
+        boolean regionOver = maxPerRegion > 0 && density.regionCountAt(pos) > maxPerRegion;
+        boolean chunkOver = maxPerChunk > 0 && density.chunkCountAt(pos) > maxPerChunk;
+        long regionKey = DensityIndex.regionKeyOf(pos);
+        long chunkKey = DensityIndex.chunkKeyOf(pos);
+        if (regionOver && regionGroups.getOrDefault(regionKey, 0) >= maxPerRegion) {
+            return false;
+        }
+        if (chunkOver && chunkGroups.getOrDefault(chunkKey, 0) >= maxPerChunk) {
+            return false;
+        }
+        if (regionOver) {
+            regionGroups.merge(regionKey, 1, Integer::sum);
+        }
+        if (chunkOver) {
+            chunkGroups.merge(chunkKey, 1, Integer::sum);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ddd.stewme.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按玩家记录的冷却时间和转移会话，纯Java实现，可脱离游戏运行时进行测试
+ * 冷却结束后在下一次检查时移除；玩家退出或切换维度时调用forget移除其所有记录，
+ * 因此记录数量以在线玩家数为上限
+ * @param <S> 会话类型
+ */
+public class PlayerTracker<S> {
+    // 估算用：HashMap节点+UUID+Long
+    private static final int COOLDOWN_ENTRY_BYTES = 32 + 32 + 16;
+    // 估算用：HashMap节点+UUID，会话对象本身的大小由调用者估算
+    private static final int SESSION_ENTRY_BYTES = 32 + 32;
+
+    private final Map<UUID, Long> cooldowns = new HashMap<>();
+    private final Map<UUID, S> sessions = new HashMap<>();
+
+    /**
+     * 检查玩家是否仍在冷却期内，已结束的冷却记录会被移除
+     * @param player 玩家UUID
+     * @param now 当前游戏时间
+     */
+    public boolean isCoolingDown(UUID player, long now) {
+        Long until = cooldowns.get(player);
+        if (until == null) {
+            return false;
+        }
+        if (now < until) {
+            return true;
+        }
+        cooldowns.remove(player);
+        return false;
+    }
+
+    /**
+     * 设置玩家的冷却结束时间
+     */
+    public void startCooldown(UUID player, long until) {
+        cooldowns.put(player, until);
+    }
+
+    public S getSession(UUID player) {
+        return sessions.get(player);
+    }
+
+    public void putSession(UUID player, S session) {
+        sessions.put(player, session);
+    }
+
+    /**
+     * 移除玩家的会话
+     * @return 被移除的会话，不存在时返回null
+     */
+    public S removeSession(UUID player) {
+        return sessions.remove(player);
+    }
+
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    /**
+     * 是否有满足条件的会话
+     */
+    public boolean anySession(Predicate<? super S> condition) {
+        for (S session : sessions.values()) {
+            if (condition.test(session)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取所有有会话的玩家，返回副本，遍历时可以结算并移除会话
+     */
+    public List<UUID> sessionPlayers() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    /**
+     * 玩家退出或切换维度时移除其所有记录
+     * 进行中的会话应由调用者先结算
+     * @return 未结算的会话，不存在时返回null
+     */
+    public S forget(UUID player) {
+        cooldowns.remove(player);
+        return sessions.remove(player);
+    }
+
+    public int cooldownCount() {
+        return cooldowns.size();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 有冷却记录或会话的玩家数量
+     */
+    public int trackedPlayerCount() {
+        int count = cooldowns.size();
+        for (UUID player : sessions.keySet()) {
+            if (!cooldowns.containsKey(player)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 估算冷却记录和会话占用的堆内存字节数
+     * @param sessionBytes 单个会话对象的估算字节数
+     */
+    public long estimatedBytes(ToLongFunction<? super S> sessionBytes) {
+        long bytes = (long) cooldowns.size() * COOLDOWN_ENTRY_BYTES;
+        for (S session : sessions.values()) {
+            bytes += SESSION_ENTRY_BYTES + sessionBytes.applyAsLong(session);
+        }
+        return bytes;
+    }
+}
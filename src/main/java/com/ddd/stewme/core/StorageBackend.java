@@ -0,0 +1,11 @@
+package com.ddd.stewme.core;
+
+/**
+ * 锅数据的持久化后端
+ */
+public enum StorageBackend {
+    /** 保存在stew_me_data的NBT中，每次保存和加载都完整序列化 */
+    SAVED_DATA,
+    /** 保存在每个维度的内存映射定长记录文件中，内存中只保留已加载区块中的锅 */
+    MAPPED
+}
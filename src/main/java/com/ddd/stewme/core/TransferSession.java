@@ -0,0 +1,165 @@
+package com.ddd.stewme.core;
+
+/**
+ * 玩家站在岩浆锅中的一次转移会话，用解析公式代替逐tick的30tick转移
+ *
+ * 逐tick规则（每个游戏tick先执行世界的自然衰减，再执行玩家tick）：
+ * 玩家效果先自然减少1tick，然后减少30tick并累加到锅中；剩余不足30tick时全部转移并移除效果
+ * 会话在开始tick（已按逐tick规则转移过一次）记录玩家效果的剩余时间d和锅中对应效果的时间T0，
+ * 之后经过n个tick：
+ * - 完整转移次数 K = (d - 1) / 31，min(n, K) 次每次转移30tick，玩家效果剩余 d - 31n
+ * - n > K 时在第K+1个tick转移剩余的 d - 31K - 1 并移除效果
+ * - 锅中时间 = min(T0 + 转移总量 - 期间衰减次数, 72000 - 最后一次累加之后的衰减次数)
+ * 每个tick的转移量不小于衰减量，因此上限一旦达到只会被之后的衰减拉低，上式与逐tick结果一致
+ * 同一个锅同时只有一个玩家会话时结果是精确的
+ */
+public class TransferSession {
+    // 每个完整tick玩家效果减少的时间：自然减少1 + 转移30
+    private static final int LOSS_PER_TICK = BrewingRules.TRANSFER_PER_TICK + 1;
+    // 估算用：对象头+字段，以及每个int数组的数组头（64位JVM，压缩指针）
+    private static final int OBJECT_BYTES = 56;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final long pos;
+    private final long startTick;
+    private final int[] effectIds;
+    private final int[] levels;
+    private final int[] durations;
+    private final int[] cauldronLevels;
+    private final int[] cauldronTimes;
+    private final long expiryTick;
+
+    /**
+     * @param pos 锅的打包坐标
+     * @param startTick 会话开始的游戏时间，该tick的转移已经按逐tick规则执行
+     * @param effectIds 玩家效果ID
+     * @param levels 玩家效果等级
+     * @param durations 开始tick转移后玩家效果的剩余时间
+     * @param state 锅的当前状态，用于记录各效果的初始时间
+     */
+    public TransferSession(long pos, long startTick, int[] effectIds, int[] levels, int[] durations, CauldronState state) {
+        this.pos = pos;
+        this.startTick = startTick;
+        this.effectIds = effectIds.clone();
+        this.levels = levels.clone();
+        this.durations = durations.clone();
+        this.cauldronLevels = new int[effectIds.length];
+        this.cauldronTimes = new int[effectIds.length];
+        long expiry = Long.MAX_VALUE;
+        for (int i = 0; i < effectIds.length; i++) {
+            int index = state.indexOf(effectIds[i]);
+            cauldronLevels[i] = index >= 0 ? state.levelAt(index) : levels[i];
+            cauldronTimes[i] = index >= 0 ? state.timeAt(index) : 0;
+            expiry = Math.min(expiry, startTick + fullTransfers(i) + 1);
+        }
+        this.expiryTick = expiry;
+    }
+
+    public long getPos() {
+        return pos;
+    }
+
+    public long getStartTick() {
+        return startTick;
+    }
+
+    /**
+     * 最早有效果耗尽的游戏时间，到达时需要结算以移除该效果
+     */
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+
+    public int effectCount() {
+        return effectIds.length;
+    }
+
+    public int effectIdAt(int index) {
+        return effectIds[index];
+    }
+
+    public int levelAt(int index) {
+        return levels[index];
+    }
+
+    /**
+     * 到指定游戏时间为止，某个效果从玩家身上扣除的转移时间（不含自然减少）
+     */
+    public int deductedAt(int index, long now) {
+        long n = Math.max(0, now - startTick);
+        return (int) Math.min(n, fullTransfers(index)) * BrewingRules.TRANSFER_PER_TICK;
+    }
+
+    /**
+     * 到指定游戏时间为止，某个效果是否已经全部转移并应被移除
+     */
+    public boolean isExpiredAt(int index, long now) {
+        return now - startTick > fullTransfers(index);
+    }
+
+    /**
+     * 把会话开始后到指定游戏时间（含）为止的转移结果写入锅状态
+     * 离开锅时结算到上一tick，但本tick的自然衰减可能已经执行，也可能尚未执行（世界tick中途触发的效果事件），
+     * 因此转移和衰减分别计算到不同的时间
+     * @param uptoTick 结算到的游戏时间
+     * @param now 锅表实际执行过的最后一次自然衰减的游戏时间，不能用当前游戏时间代替
+     * @param state 锅状态
+     */
+    public void settle(long uptoTick, long now, CauldronState state) {
+        long n = uptoTick - startTick;
+        if (n <= 0) {
+            return;
+        }
+        for (int i = 0; i < effectIds.length; i++) {
+            int full = fullTransfers(i);
+            int transfers = (int) Math.min(n, full);
+            long transferred = (long) transfers * BrewingRules.TRANSFER_PER_TICK;
+            long lastAddTick = startTick + transfers;
+            if (n > full) {
+                // 最后一个tick转移剩余部分，剩余为0时效果已被自然移除，不再累加
+                int partial = durations[i] - full * LOSS_PER_TICK - 1;
+                if (partial > 0) {
+                    transferred += partial;
+                    lastAddTick++;
+                }
+            }
+            if (transferred <= 0) {
+                continue;
+            }
+
+            int index = state.indexOf(effectIds[i]);
+            long base;
+            int level;
+            if (index >= 0) {
+                // 锅中效果一直存在，期间的衰减已经由锅表执行
+                base = state.timeAt(index);
+                level = BrewingRules.mergeLevel(state.levelAt(index), levels[i]);
+            } else if (cauldronTimes[i] - BrewingRules.decaysBetween(startTick, startTick + 1) > 0) {
+                // 实际上持续的累加会让效果一直存在，但锅表中的效果已被衰减移除，从初始时间重新计算
+                base = cauldronTimes[i] - BrewingRules.decaysBetween(startTick, now);
+                level = BrewingRules.mergeLevel(cauldronLevels[i], levels[i]);
+            } else {
+                // 第一次累加之前效果已经耗尽，按新效果重新累加
+                base = -BrewingRules.decaysBetween(startTick + 1, now);
+                level = levels[i];
+            }
+            long time = Math.min(base + transferred,
+                    BrewingRules.MAX_EFFECT_TIME - BrewingRules.decaysBetween(lastAddTick, now));
+            state.setEffect(effectIds[i], level, (int) time);
+        }
+    }
+
+    /**
+     * 估算本对象及其数组占用的堆内存字节数
+     */
+    public long estimatedBytes() {
+        return OBJECT_BYTES + 5L * (ARRAY_HEADER_BYTES + 4L * effectIds.length);
+    }
+
+    /**
+     * 某个效果在移除前可以完整转移30tick的次数
+     */
+    private int fullTransfers(int index) {
+        return durations[index] > 0 ? (durations[index] - 1) / LOSS_PER_TICK : 0;
+    }
+}
@@ -1,6 +1,7 @@
 // CauldronData.java
 package com.ddd.stewme.data;
 
+import com.ddd.stewme.core.CauldronState;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.nbt.CompoundTag;
@@ -9,26 +10,48 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.effect.MobEffect;
 import net.minecraft.core.registries.BuiltInRegistries;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * 炼药锅数据类，存储锅的位置和效果信息
  * 更新：移除所有Logger输出
+ * 更新：酿造规则移至core包的CauldronState，本类只负责Holder/NBT与效果ID之间的转换
  */
 public class CauldronData {
     private final BlockPos pos;
-    private final Map<Holder<MobEffect>, EffectData> effects = new HashMap<>();
+    private final CauldronState state;
 
     public CauldronData(BlockPos pos) {
+        this(pos, new CauldronState());
+    }
+
+    public CauldronData(BlockPos pos, CauldronState state) {
         this.pos = pos;
+        this.state = state;
     }
 
     public BlockPos getPos() {
         return pos;
     }
 
+    public CauldronState getState() {
+        return state;
+    }
+
+    public boolean isEmpty() {
+        return state.isEmpty();
+    }
+
+    /**
+     * 获取锅内所有效果的快照
+     * 返回的Map是副本，修改它不会影响锅数据
+     */
     public Map<Holder<MobEffect>, EffectData> getEffects() {
+        Map<Holder<MobEffect>, EffectData> effects = new LinkedHashMap<>();
+        state.forEach((effectId, level, time) ->
+                BuiltInRegistries.MOB_EFFECT.getHolder(effectId).ifPresent(holder ->
+                        effects.put(holder, new EffectData(level, time))));
         return effects;
     }
 
@@ -37,25 +60,15 @@ public class CauldronData {
      * 同一效果取最高等级，累计时间不超过72000tick
      */
     public void addEffect(Holder<MobEffect> effect, int level, int time) {
-        EffectData existing = effects.get(effect);
-        if (existing != null) {
-            int newLevel = Math.max(existing.level, level);
-            int newTime = Math.min(existing.time + time, 72000);
-            effects.put(effect, new EffectData(newLevel, newTime));
-        } else {
-            effects.put(effect, new EffectData(level, Math.min(time, 72000)));
-        }
+        state.addEffect(effectId(effect), level, time);
     }
 
     /**
-     * 每10tick减少效果时间1tick
+     * 从玩家身上的效果转移一次（30tick）到锅数据中
+     * @return 玩家身上该效果的剩余时间，0表示效果应被移除
      */
-    public void tickEffects() {
-        effects.entrySet().removeIf(entry -> {
-            EffectData data = entry.getValue();
-            data.time -= 1;
-            return data.time <= 0;
-        });
+    public int absorbEffect(Holder<MobEffect> effect, int level, int duration) {
+        return state.absorb(effectId(effect), level, duration);
     }
 
     public CompoundTag save() {
@@ -65,13 +78,16 @@ public class CauldronData {
         tag.putInt("z", pos.getZ());
 
         ListTag effectsList = new ListTag();
-        for (Map.Entry<Holder<MobEffect>, EffectData> entry : effects.entrySet()) {
-            CompoundTag effectTag = new CompoundTag();
-            effectTag.putString("effect", BuiltInRegistries.MOB_EFFECT.getKey(entry.getKey().value()).toString());
-            effectTag.putInt("level", entry.getValue().level);
-            effectTag.putInt("time", entry.getValue().time);
-            effectsList.add(effectTag);
-        }
+        state.forEach((effectId, level, time) -> {
+            String name = effectName(effectId);
+            if (name != null) {
+                CompoundTag effectTag = new CompoundTag();
+                effectTag.putString("effect", name);
+                effectTag.putInt("level", level);
+                effectTag.putInt("time", time);
+                effectsList.add(effectTag);
+            }
+        });
         tag.put("effects", effectsList);
 
         return tag;
@@ -85,11 +101,10 @@ public class CauldronData {
             ListTag effectsList = tag.getList("effects", CompoundTag.TAG_COMPOUND);
             for (int i = 0; i < effectsList.size(); i++) {
                 CompoundTag effectTag = effectsList.getCompound(i);
-                MobEffect effect = BuiltInRegistries.MOB_EFFECT.get(ResourceLocation.parse(effectTag.getString("effect")));
-                if (effect != null) {
-                    // 获取效果的 Holder
-                    Holder<MobEffect> effectHolder = BuiltInRegistries.MOB_EFFECT.wrapAsHolder(effect);
-                    data.effects.put(effectHolder, new EffectData(effectTag.getInt("level"), effectTag.getInt("time")));
+                int effectId = effectIdOf(effectTag.getString("effect"));
+                if (effectId >= 0) {
+                    // 使用运行时注册表ID存储效果，存档中仍然使用注册名
+                    data.state.addEffect(effectId, effectTag.getInt("level"), effectTag.getInt("time"));
                 }
             }
         }
@@ -97,12 +112,39 @@ public class CauldronData {
         return data;
     }
 
+    /**
+     * 获取效果的运行时注册表ID
+     */
+    public static int effectId(Holder<MobEffect> effect) {
+        return BuiltInRegistries.MOB_EFFECT.getId(effect.value());
+    }
+
+    /**
+     * 获取运行时注册表ID对应的效果注册名
+     * @return 注册名，ID未注册时返回null
+     */
+    public static String effectName(int effectId) {
+        MobEffect effect = BuiltInRegistries.MOB_EFFECT.byId(effectId);
+        return effect != null ? BuiltInRegistries.MOB_EFFECT.getKey(effect).toString() : null;
+    }
+
+    /**
+     * 获取效果注册名对应的运行时注册表ID
+     * 运行时ID在游戏或模组列表变化后可能改变，持久化时应保存注册名
+     * @return 运行时ID，效果不存在（例如提供该效果的模组已移除）时返回-1
+     */
+    public static int effectIdOf(String name) {
+        ResourceLocation location = ResourceLocation.tryParse(name);
+        MobEffect effect = location != null ? BuiltInRegistries.MOB_EFFECT.get(location) : null;
+        return effect != null ? BuiltInRegistries.MOB_EFFECT.getId(effect) : -1;
+    }
+
     /**
      * 效果数据内部类
      */
     public static class EffectData {
         public final int level;
-        public int time;
+        public final int time;
 
         public EffectData(int level, int time) {
             this.level = level;
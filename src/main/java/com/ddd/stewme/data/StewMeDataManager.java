@@ -1,24 +1,102 @@
 // StewMeDataManager.java
 package com.ddd.stewme.data;
 
+import com.ddd.stewme.Config;
+import com.ddd.stewme.StewMe;
+import com.ddd.stewme.core.ActiveCauldronSet;
+import com.ddd.stewme.core.CauldronListener;
+import com.ddd.stewme.core.CauldronState;
+import com.ddd.stewme.core.CauldronTable;
+import com.ddd.stewme.core.DensityIndex;
+import com.ddd.stewme.core.MappedCauldronStore;
+import com.ddd.stewme.core.StorageBackend;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
 import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * 锅数据管理器，负责锅数据的存储与持久化
  * 不再管理碗数据，所有效果数据直接存储在物品Lore中
- * 更新：移除所有Logger输出
+ * 更新：移除所有Logger输出，只在映射文件读写失败时记录错误日志
+ * 更新：锅状态存储在core包的CauldronTable中，以BlockPos.asLong作为键
+ * 更新：通过监听锅表的变化事件标记脏数据并维护活跃锅集合
+ * 更新：可选使用内存映射文件存储锅数据，NBT中只保留后端标记，切换后端时自动转换
+ * 更新：映射文件按效果注册名保存效果，映射文件无法写入时本次运行改为保存到NBT
+ * 更新：记录锅表实际执行过的最后一次自然衰减的游戏时间，转移会话据此结算
+ * 更新：映射文件后端下锅表只保留已加载区块中的锅，区块加载或查询时从文件读入，区块卸载后换出，保存时只写入修改过的锅
  */
 public class StewMeDataManager extends SavedData {
     private static final String DATA_NAME = "stew_me_data";
-    private final Map<String, CauldronData> cauldronData = new HashMap<>();
+    private static final String STORE_FILE_NAME = "stew_me_cauldrons.dat";
+    private static final String BACKEND_TAG = "backend";
+    private static final String BACKEND_MAPPED = "mapped";
+    // 映射文件中的效果按注册名保存，加载时重新映射为运行时ID
+    private static final MappedCauldronStore.EffectNames EFFECT_NAMES = new MappedCauldronStore.EffectNames() {
+        @Override
+        public String nameOf(int effectId) {
+            return CauldronData.effectName(effectId);
+        }
+
+        @Override
+        public int idOf(String name) {
+            return CauldronData.effectIdOf(name);
+        }
+    };
+
+    private final CauldronTable table;
+    private final ActiveCauldronSet activeCauldrons = new ActiveCauldronSet();
+
+    // 内存映射存储，仅在使用MAPPED后端时打开
+    private MappedCauldronStore store;
+    private boolean storageAttached = false;
+    // 上次保存时数据是否写在映射文件中（NBT中的后端标记）
+    private boolean storedInMappedFile = false;
+    // 上次同步后从表中移除、尚未从映射文件中删除的锅
+    private final Set<Long> pendingStoreRemovals = new HashSet<>();
+    // 锅表实际执行过的最后一次自然衰减的游戏时间，不保存，加载后从当前游戏时间的上一tick开始
+    private long decayedThrough;
+    // 已从映射文件读入所有锅的区块，这些区块中表里没有的锅就是不存在
+    private final Set<Long> pagedChunks = new HashSet<>();
+
+    public StewMeDataManager() {
+        this(new CauldronTable());
+    }
+
+    /**
+     * 使用已填充的锅表创建管理器，监听器在填充完成后注册，加载过程不会标记脏数据
+     * @param table 锅状态表
+     */
+    private StewMeDataManager(CauldronTable table) {
+        this.table = table;
+        this.activeCauldrons.seed(table);
+        this.table.addListener(activeCauldrons);
+        this.table.addListener(new DirtyTracker());
+        this.table.addListener(new StoreRemovalTracker());
+    }
+
+    /**
+     * 注册锅状态变化监听器（粒子、统计、客户端同步等）
+     * @param listener 监听器
+     */
+    public void addListener(CauldronListener listener) {
+        table.addListener(listener);
+    }
+
+    public void removeListener(CauldronListener listener) {
+        table.removeListener(listener);
+    }
 
     /**
      * 根据位置获取锅数据
@@ -26,8 +104,8 @@ public class StewMeDataManager extends SavedData {
      * @return 对应的锅数据，如果不存在则返回null
      */
     public CauldronData getCauldronData(BlockPos pos) {
-        String key = posToString(pos);
-        return cauldronData.get(key);
+        var state = lookup(pos.asLong());
+        return state != null ? new CauldronData(pos, state) : null;
     }
 
     /**
@@ -35,9 +113,9 @@ public class StewMeDataManager extends SavedData {
      * @param data 要添加的锅数据
      */
     public void putCauldronData(CauldronData data) {
-        String key = posToString(data.getPos());
-        cauldronData.put(key, data);
-        setDirty();
+        // 先读入文件中的旧锅，替换时才能正确移出密度索引
+        lookup(data.getPos().asLong());
+        table.put(data.getPos().asLong(), data.getState());
     }
 
     /**
@@ -45,29 +123,104 @@ public class StewMeDataManager extends SavedData {
      * @param pos 要移除的炼药锅位置
      */
     public void removeCauldronData(BlockPos pos) {
-        String key = posToString(pos);
-        cauldronData.remove(key);
-        setDirty();
+        if (lookup(pos.asLong()) != null) {
+            table.remove(pos.asLong());
+        }
+    }
+
+    /**
+     * 玩家用碗盛出锅中效果，移除该位置的锅数据
+     * @param pos 被盛出的炼药锅位置
+     */
+    public void drainCauldronData(BlockPos pos) {
+        if (lookup(pos.asLong()) != null) {
+            table.drain(pos.asLong());
+        }
+    }
+
+    /**
+     * 检查在指定位置新建锅数据是否仍在区块/区域配额内
+     * 已有数据的位置总是允许
+     * @param pos 炼药锅的位置
+     * @param maxPerChunk 每区块上限，0表示不限制
+     * @param maxPerRegion 每区域上限，0表示不限制
+     * @return 是否允许新建
+     */
+    public boolean allowsNewCauldron(BlockPos pos, int maxPerChunk, int maxPerRegion) {
+        lookup(pos.asLong());
+        return table.allowsNew(pos.asLong(), maxPerChunk, maxPerRegion);
     }
 
     /**
      * 每10tick执行一次自然衰减 - 只对锅列表中的效果进行衰减
+     * @param gameTime 本次衰减的游戏时间
      */
-    public void tick() {
-        // 使用迭代器来安全地移除空数据
-        var iterator = cauldronData.entrySet().iterator();
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            CauldronData data = entry.getValue();
-            data.tickEffects();
-
-            // 如果效果列表为空，移除这个锅数据
-            if (data.getEffects().isEmpty()) {
-                iterator.remove();
+    public void tick(long gameTime) {
+        decayedThrough = gameTime;
+        // 衰减会改变所有锅的剩余时间，没有锅时不标记脏数据
+        // 映射文件读取时会补上衰减，只有衰减耗尽移除锅时才需要保存
+        if (table.tick() && store == null) {
+            setDirty();
+        }
+    }
+
+    /**
+     * 区块加载时从映射文件读入该区块中的所有锅
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     */
+    public void pageInChunk(int chunkX, int chunkZ) {
+        long chunkKey = DensityIndex.chunkKey(chunkX, chunkZ);
+        if (store == null || !pagedChunks.add(chunkKey)) {
+            return;
+        }
+        store.forEachInChunk(chunkKey, decayedThrough, (pos, state) -> {
+            if (table.get(pos) == null && !pendingStoreRemovals.contains(pos)) {
+                pageIn(pos, state);
             }
+        });
+    }
+
+    /**
+     * 换出已卸载区块中上次保存之后没有修改过的锅，修改过的锅在保存之后的下一次检查中换出
+     * @param level 服务器世界
+     */
+    public void pageOutUnloaded(ServerLevel level) {
+        if (store == null) {
+            return;
         }
+        pagedChunks.removeIf(chunkKey -> !level.hasChunk(DensityIndex.chunkX(chunkKey), DensityIndex.chunkZ(chunkKey)));
+        table.evictIf(pos -> !level.isLoaded(BlockPos.of(pos)));
+    }
 
-        setDirty();
+    /**
+     * 查找锅状态，表中没有时从映射文件读入
+     * 已读入整个区块或等待从文件删除的锅不再查找文件
+     */
+    private CauldronState lookup(long pos) {
+        CauldronState state = table.get(pos);
+        if (state != null || store == null
+                || pagedChunks.contains(DensityIndex.chunkKeyOf(pos)) || pendingStoreRemovals.contains(pos)) {
+            return state;
+        }
+        return pageIn(pos, store.get(pos, decayedThrough));
+    }
+
+    /**
+     * 把从映射文件读出的锅放入表中，效果已全部耗尽的锅从文件和密度索引中删除
+     * @return 放入表中的锅状态，没有放入时返回null
+     */
+    private CauldronState pageIn(long pos, CauldronState state) {
+        if (state == null) {
+            return null;
+        }
+        if (state.isEmpty()) {
+            table.density().remove(pos);
+            store.remove(pos);
+            return null;
+        }
+        table.adopt(pos, state);
+        return state;
     }
 
     /**
@@ -75,10 +228,25 @@ public class StewMeDataManager extends SavedData {
      */
     @Override
     public CompoundTag save(CompoundTag tag, net.minecraft.core.HolderLookup.Provider registries) {
+        // 映射文件后端：把修改过的锅同步到文件，NBT中只写后端标记
+        if (store != null) {
+            syncStore();
+        }
+        // 同步失败时已改用NBT保存，继续写入完整的锅数据
+        if (store != null) {
+            tag.putString(BACKEND_TAG, BACKEND_MAPPED);
+            return tag;
+        }
+        // 映射文件打开失败时保留标记，避免用空数据覆盖文件中的锅
+        if (storedInMappedFile) {
+            tag.putString(BACKEND_TAG, BACKEND_MAPPED);
+            return tag;
+        }
+
         // 保存锅数据
         ListTag cauldronList = new ListTag();
-        for (CauldronData data : cauldronData.values()) {
-            cauldronList.add(data.save());
+        for (var entry : table.view().entrySet()) {
+            cauldronList.add(new CauldronData(BlockPos.of(entry.getKey()), entry.getValue()).save());
         }
         tag.put("cauldrons", cauldronList);
 
@@ -89,7 +257,7 @@ public class StewMeDataManager extends SavedData {
      * 从NBT标签加载数据
      */
     public static StewMeDataManager load(CompoundTag tag, net.minecraft.core.HolderLookup.Provider registries) {
-        StewMeDataManager manager = new StewMeDataManager();
+        CauldronTable table = new CauldronTable();
 
         // 加载锅数据
         if (tag.contains("cauldrons")) {
@@ -97,10 +265,14 @@ public class StewMeDataManager extends SavedData {
             for (int i = 0; i < cauldronList.size(); i++) {
                 CompoundTag cauldronTag = cauldronList.getCompound(i);
                 CauldronData data = CauldronData.load(cauldronTag);
-                manager.cauldronData.put(posToString(data.getPos()), data);
+                if (!data.isEmpty()) {
+                    table.put(data.getPos().asLong(), data.getState());
+                }
             }
         }
 
+        StewMeDataManager manager = new StewMeDataManager(table);
+        manager.storedInMappedFile = BACKEND_MAPPED.equals(tag.getString(BACKEND_TAG));
         return manager;
     }
 
@@ -111,28 +283,214 @@ public class StewMeDataManager extends SavedData {
      */
     public static StewMeDataManager get(ServerLevel level) {
         DimensionDataStorage storage = level.getDataStorage();
-        return storage.computeIfAbsent(
-                new SavedData.Factory<>(
-                        StewMeDataManager::new,
-                        StewMeDataManager::load,
-                        null
-                ),
-                DATA_NAME
+        StewMeDataManager manager = storage.computeIfAbsent(factory(), DATA_NAME);
+        if (!manager.storageAttached) {
+            manager.attachStorage(level);
+        }
+        return manager;
+    }
+
+    /**
+     * 世界卸载时同步并关闭映射文件，写入正常关闭标记
+     * @param level 服务器世界
+     */
+    public static void closeStorage(ServerLevel level) {
+        StewMeDataManager manager = level.getDataStorage().get(factory(), DATA_NAME);
+        if (manager != null && manager.store != null) {
+            manager.syncStore();
+        }
+        if (manager != null && manager.store != null) {
+            try {
+                manager.store.close();
+            } catch (IOException e) {
+                StewMe.LOGGER.error("[StewMe] 关闭炼药锅存储文件失败: {}", manager.store.getFile(), e);
+            }
+            manager.store = null;
+        }
+    }
+
+    private static SavedData.Factory<StewMeDataManager> factory() {
+        return new SavedData.Factory<>(
+                StewMeDataManager::new,
+                StewMeDataManager::load,
+                null
         );
     }
 
     /**
-     * 获取所有锅数据的集合
-     * @return 所有锅数据的集合
+     * 根据配置的后端打开映射文件，并在后端切换时转换数据
+     * MAPPED：文件中已有数据则只扫描一遍建立密度索引，锅在区块加载或查询时才读入；否则把NBT中加载的锅写入文件
+     * SAVED_DATA：上次保存在文件中时，把文件中的锅读回内存，下次保存写入NBT
+     * @param level 服务器世界
+     */
+    private void attachStorage(ServerLevel level) {
+        storageAttached = true;
+        // 当前tick的衰减是否已经执行无法确定，按尚未执行处理；两次衰减之间的任意时间对结算是等价的
+        decayedThrough = level.getGameTime() - 1;
+        Path file = storeFile(level);
+        try {
+            if (Config.STORAGE_BACKEND.get() == StorageBackend.MAPPED) {
+                if (storedInMappedFile && MappedCauldronStore.exists(file)) {
+                    store = MappedCauldronStore.open(file, EFFECT_NAMES);
+                    storedInMappedFile = true;
+                    countStoredCauldrons();
+                } else {
+                    // 从stew_me_data转换：以NBT中加载的数据为准，按锅数量重建文件，写入时不需要扩容
+                    store = MappedCauldronStore.create(file, MappedCauldronStore.recordsFor(table), EFFECT_NAMES);
+                    storedInMappedFile = true;
+                    pendingStoreRemovals.clear();
+                    syncStore();
+                    setDirty();
+                }
+            } else if (storedInMappedFile) {
+                if (MappedCauldronStore.exists(file)) {
+                    try (MappedCauldronStore previous = MappedCauldronStore.open(file, EFFECT_NAMES)) {
+                        previous.loadInto(table, decayedThrough);
+                    }
+                }
+                storedInMappedFile = false;
+                setDirty();
+            }
+        } catch (IOException e) {
+            StewMe.LOGGER.error("[StewMe] 无法打开炼药锅存储文件 {}，本次运行不会保存锅数据", file, e);
+            store = null;
+        }
+    }
+
+    /**
+     * 把文件中仍有效果的锅计入密度索引，配额检查不需要读入锅；效果已全部耗尽的锅从文件中删除
+     */
+    private void countStoredCauldrons() {
+        List<Long> empty = new ArrayList<>();
+        store.forEach(decayedThrough, (pos, state) -> {
+            if (state.isEmpty()) {
+                empty.add(pos);
+            } else {
+                table.density().add(pos);
+            }
+        });
+        for (long pos : empty) {
+            store.remove(pos);
+        }
+    }
+
+    /**
+     * 把上次同步之后修改过的锅写入映射文件，并删除已移除的锅；未修改的锅在读取时补上衰减，不需要重写
+     * 写入失败（例如平台不允许在映射期间替换文件以扩容）时，本次运行改为保存到NBT
+     */
+    private void syncStore() {
+        try {
+            for (long pos : pendingStoreRemovals) {
+                store.remove(pos);
+            }
+            pendingStoreRemovals.clear();
+            for (long pos : table.takeChanged()) {
+                CauldronState state = table.get(pos);
+                if (state.isEmpty()) {
+                    store.remove(pos);
+                } else {
+                    store.put(pos, state, decayedThrough);
+                }
+            }
+            store.flush();
+        } catch (IOException e) {
+            StewMe.LOGGER.error("[StewMe] 写入炼药锅存储文件失败，本次运行改为保存到{}: {}", DATA_NAME, store.getFile(), e);
+            fallBackToSavedData();
+        }
+    }
+
+    /**
+     * 把文件中尚未读入的锅全部读入表中，然后关闭映射文件，之后的保存把所有锅写入NBT且不再带有后端标记
+     * 下次加载时按配置的后端重新创建映射文件，不会读取本次写了一半的文件
+     */
+    private void fallBackToSavedData() {
+        store.forEach(decayedThrough, (pos, state) -> {
+            if (table.get(pos) != null || pendingStoreRemovals.contains(pos)) {
+                return;
+            }
+            if (state.isEmpty()) {
+                table.density().remove(pos);
+            } else {
+                table.adopt(pos, state);
+            }
+        });
+        pagedChunks.clear();
+        try {
+            store.close();
+        } catch (IOException e) {
+            StewMe.LOGGER.error("[StewMe] 关闭炼药锅存储文件失败: {}", store.getFile(), e);
+        }
+        store = null;
+        storedInMappedFile = false;
+        pendingStoreRemovals.clear();
+        setDirty();
+    }
+
+    /**
+     * 映射文件位于维度的data目录中，与stew_me_data放在一起
+     */
+    private static Path storeFile(ServerLevel level) {
+        Path root = level.getServer().getWorldPath(LevelResource.ROOT);
+        return DimensionType.getStorageFolder(level.dimension(), root).resolve("data").resolve(STORE_FILE_NAME);
+    }
+
+    /**
+     * 锅表实际执行过的最后一次自然衰减的游戏时间
+     * 效果事件可能在世界tick中途、本tick的衰减之前触发，结算会话时必须使用该时间而不是当前游戏时间
+     */
+    public long getDecayedThrough() {
+        return decayedThrough;
+    }
+
+    /**
+     * 获取所有有效果的锅位置，由变化事件维护，无需扫描整个锅表
+     * @return 活跃锅的打包坐标集合（只读）
+     */
+    public java.util.Set<Long> getActiveCauldronPositions() {
+        return activeCauldrons.positions();
+    }
+
+    /**
+     * 获取底层的锅状态表
      */
-    public java.util.Collection<CauldronData> getAllCauldronData() {
-        return java.util.Collections.unmodifiableCollection(cauldronData.values());
+    public CauldronTable getTable() {
+        return table;
     }
 
     /**
-     * 将位置转换为字符串键
+     * 记录从表中移除的锅，下次同步时从映射文件中删除
      */
-    private static String posToString(BlockPos pos) {
-        return pos.getX() + "," + pos.getY() + "," + pos.getZ();
+    private class StoreRemovalTracker implements CauldronListener {
+        @Override
+        public void onCreated(long pos) {
+            pendingStoreRemovals.remove(pos);
+        }
+
+        @Override
+        public void onRemoved(long pos) {
+            if (store != null) {
+                pendingStoreRemovals.add(pos);
+            }
+        }
+    }
+
+    /**
+     * 任何锅状态变化都标记数据需要保存
+     */
+    private class DirtyTracker implements CauldronListener {
+        @Override
+        public void onCreated(long pos) {
+            setDirty();
+        }
+
+        @Override
+        public void onEffectAccumulated(long pos, int effectId, int level, int time) {
+            setDirty();
+        }
+
+        @Override
+        public void onRemoved(long pos) {
+            setDirty();
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,19 @@
 // StewMeEventHandler.java
 package com.ddd.stewme.handlers;
 
+import com.ddd.stewme.Config;
 import com.ddd.stewme.StewMe;
+import com.ddd.stewme.core.BrewingRules;
+import com.ddd.stewme.core.CauldronSession;
+import com.ddd.stewme.core.OverLimitBehavior;
+import com.ddd.stewme.core.ParticleBudget;
+import com.ddd.stewme.core.PlayerTracker;
 import com.ddd.stewme.data.StewMeDataManager;
 import com.ddd.stewme.data.CauldronData;
 import com.ddd.stewme.item.MysteryStewItem;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.core.particles.ParticleTypes;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
@@ -19,14 +27,19 @@ import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.CampfireBlock;
 import net.minecraft.world.level.block.LayeredCauldronBlock;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.neoforge.event.entity.living.MobEffectEvent;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerInteractEvent;
 import net.neoforged.neoforge.event.level.BlockEvent;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.tick.LevelTickEvent;
 import net.neoforged.neoforge.event.tick.PlayerTickEvent;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -36,12 +49,55 @@ import java.util.UUID;
  * 更新：锅有数据时持续产生粒子效果
  * 更新：当玩家没有效果时停止处理，优化性能
  * 更新：移除所有Logger，聊天栏消息使用国际化翻译
+ * 更新：酿造数值规则统一使用core包的BrewingRules
+ * 更新：按区块/区域限制活跃锅数量，超额时拒绝新建或合并粒子效果
+ * 更新：玩家退出或切换维度时清理冷却记录，定期移除已不是水炼药锅的锅数据
+ * 更新：世界卸载时关闭锅数据的映射文件
+ * 更新：玩家站在岩浆锅中时使用转移会话，离开、盛出或采样时一次性结算，不再每tick转移
+ * 更新：自然衰减按每个世界的游戏时间执行，不再共用计数器
+ * 更新：冷却记录和转移会话由core包的PlayerTracker管理
+ * 更新：同一个锅中有多个玩家时使用逐tick转移，效果被刷新时在合并前结算会话
+ * 更新：会话的开始和结算（含玩家效果时间的扣除）由core包的CauldronSession实现，与长时间运行测试共用
+ * 更新：区块加载时从映射文件读入该区块的锅，定期检查时换出已卸载区块中的锅
  */
 public class StewMeEventHandler {
 
-    private int tickCounter = 0;
-    private final Map<UUID, Long> playerCooldowns = new HashMap<>();
+    // 玩家冷却记录和转移会话，退出或切换维度时移除
+    private final PlayerTracker<CauldronSession<Player, ServerLevel>> players = new PlayerTracker<>();
+    // 正在由本处理器修改玩家效果，此时触发的效果事件不使会话失效
+    private boolean adjustingEffects = false;
     private static final long COOLDOWN_TICKS = 60; // 3秒 = 60tick
+    private static final long VALIDATE_INTERVAL_TICKS = 200; // 每10秒校验一次锅数据
+    // 会话结算时读写玩家身上的效果时间
+    private static final CauldronSession.PlayerEffects<Player> PLAYER_EFFECTS = new CauldronSession.PlayerEffects<>() {
+        @Override
+        public int durationOf(Player player, int effectId) {
+            Holder<MobEffect> effect = BuiltInRegistries.MOB_EFFECT.getHolder(effectId).orElse(null);
+            MobEffectInstance current = effect != null ? player.getEffect(effect) : null;
+            return current != null ? current.getDuration() : 0;
+        }
+
+        @Override
+        public void setDuration(Player player, int effectId, int duration) {
+            Holder<MobEffect> effect = BuiltInRegistries.MOB_EFFECT.getHolder(effectId).orElse(null);
+            MobEffectInstance current = effect != null ? player.getEffect(effect) : null;
+            if (current == null) {
+                return;
+            }
+            // 先移除旧效果，再添加新效果
+            player.removeEffect(effect);
+            if (duration > 0) {
+                player.addEffect(new MobEffectInstance(
+                        effect,
+                        duration,
+                        current.getAmplifier(),
+                        current.isAmbient(),
+                        current.isVisible(),
+                        current.showIcon()
+                ));
+            }
+        }
+    };
 
     /**
      * 世界tick事件处理，用于执行自然衰减和粒子效果
@@ -51,35 +107,185 @@ public class StewMeEventHandler {
     @SubscribeEvent
     public void onLevelTick(LevelTickEvent.Post event) {
         if (event.getLevel() instanceof ServerLevel serverLevel) {
-            tickCounter++;
-
-            // 每10tick执行一次自然衰减和粒子效果
-            if (tickCounter >= 10) {
-                tickCounter = 0;
+            // 每10tick执行一次自然衰减和粒子效果，按游戏时间对齐，转移会话据此计算衰减次数
+            if (BrewingRules.isDecayTick(serverLevel.getGameTime())) {
                 StewMeDataManager manager = StewMeDataManager.get(serverLevel);
-                manager.tick();
+                manager.tick(serverLevel.getGameTime());
 
                 // 为所有有数据的锅产生粒子效果
                 generateParticlesForAllCauldrons(serverLevel, manager);
             }
+
+            if (serverLevel.getGameTime() % VALIDATE_INTERVAL_TICKS == 0) {
+                validateCauldrons(serverLevel, StewMeDataManager.get(serverLevel));
+            }
+        }
+    }
+
+    /**
+     * 移除已加载区块中已经不是水炼药锅的锅数据
+     * 锅可能被爆炸、活塞、指令等方式移除而不触发破坏事件，这些数据不会再被清理
+     * 检查之后换出已卸载区块中的锅（仅映射文件后端）
+     * @param serverLevel 服务器世界
+     * @param manager 数据管理器
+     */
+    private void validateCauldrons(ServerLevel serverLevel, StewMeDataManager manager) {
+        List<Long> stale = manager.getTable().findStale(packedPos -> {
+            BlockPos pos = BlockPos.of(packedPos);
+            // 未加载的区块不读取方块，避免加载区块
+            return !serverLevel.isLoaded(pos) || serverLevel.getBlockState(pos).getBlock() == Blocks.WATER_CAULDRON;
+        });
+        for (long packedPos : stale) {
+            BlockPos pos = BlockPos.of(packedPos);
+            settleSessionsAt(serverLevel, pos);
+            manager.removeCauldronData(pos);
+        }
+        manager.pageOutUnloaded(serverLevel);
+    }
+
+    /**
+     * 世界加载事件处理，打开锅数据的映射文件并建立密度索引，之后的区块加载事件才能读入锅
+     * @param event 世界加载事件
+     */
+    @SubscribeEvent
+    public void onLevelLoad(LevelEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            StewMeDataManager.get(serverLevel);
+        }
+    }
+
+    /**
+     * 区块加载事件处理，从映射文件读入该区块中的锅
+     * @param event 区块加载事件
+     */
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel && event.getChunk() instanceof LevelChunk chunk) {
+            StewMeDataManager.get(serverLevel).pageInChunk(chunk.getPos().x, chunk.getPos().z);
+        }
+    }
+
+    /**
+     * 世界卸载事件处理，关闭锅数据的映射文件
+     * @param event 世界卸载事件
+     */
+    @SubscribeEvent
+    public void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            // 先结算该世界中的会话，再关闭存储
+            for (UUID playerId : players.sessionPlayers()) {
+                if (players.getSession(playerId).getLevel() == serverLevel) {
+                    settleSession(playerId);
+                }
+            }
+            StewMeDataManager.closeStorage(serverLevel);
+        }
+    }
+
+    /**
+     * 玩家退出时移除冷却记录
+     * @param event 玩家退出事件
+     */
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        UUID playerId = event.getEntity().getUUID();
+        settleSession(playerId);
+        players.forget(playerId);
+    }
+
+    /**
+     * 玩家切换维度时移除冷却记录，冷却时间基于原维度的游戏时间
+     * @param event 玩家切换维度事件
+     */
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        UUID playerId = event.getEntity().getUUID();
+        settleSession(playerId);
+        players.forget(playerId);
+    }
+
+    /**
+     * 效果即将被添加到玩家身上时，如果玩家已有该效果，先结算其转移会话
+     * 原版在此事件之后才取出玩家身上的旧效果与新效果合并，结算后合并基于扣除转移之后的时间；
+     * Added事件触发时旧效果已被取出，在其中修改效果会使新效果合并到已被移除的旧效果上
+     * @param event 效果可否添加事件
+     */
+    @SubscribeEvent
+    public void onEffectApplicable(MobEffectEvent.Applicable event) {
+        if (!adjustingEffects && event.getEntity().level() instanceof ServerLevel
+                && event.getEntity().hasEffect(event.getEffectInstance().getEffect())) {
+            settleSession(event.getEntity().getUUID());
         }
     }
 
+    /**
+     * 玩家获得新的效果时，使其转移会话失效，下一tick起新效果同样需要转移
+     * 已有效果的刷新在onEffectApplicable中结算
+     * @param event 效果添加事件
+     */
+    @SubscribeEvent
+    public void onEffectAdded(MobEffectEvent.Added event) {
+        invalidateSession(event.getEntity().getUUID());
+    }
+
+    /**
+     * 玩家效果被移除时（例如喝牛奶），使其转移会话失效
+     * @param event 效果移除事件
+     */
+    @SubscribeEvent
+    public void onEffectRemoved(MobEffectEvent.Remove event) {
+        invalidateSession(event.getEntity().getUUID());
+    }
+
+    /**
+     * 玩家效果自然耗尽时，使其转移会话失效
+     * @param event 效果耗尽事件
+     */
+    @SubscribeEvent
+    public void onEffectExpired(MobEffectEvent.Expired event) {
+        invalidateSession(event.getEntity().getUUID());
+    }
+
+    /**
+     * 获取当前有冷却记录或转移会话的玩家数量
+     */
+    public int getTrackedPlayerCount() {
+        return players.trackedPlayerCount();
+    }
+
+    /**
+     * 估算玩家冷却记录和转移会话占用的堆内存字节数
+     */
+    public long getEstimatedPlayerBytes() {
+        return players.estimatedBytes(CauldronSession::estimatedBytes);
+    }
+
     /**
      * 为所有有数据的锅产生粒子效果
+     * 更新：合并模式下超额区块每次只产生一组粒子
+     * 更新：遍历由变化事件维护的活跃锅集合，不再扫描整个锅表
+     * 更新：合并模式下超额区域同样每次只产生一组粒子
+     * 更新：合并模式下超额区块和区域每次最多产生上限数量组粒子，避免越过上限时骤减为一组
      * @param serverLevel 服务器世界
      * @param manager 数据管理器
      */
     private void generateParticlesForAllCauldrons(ServerLevel serverLevel, StewMeDataManager manager) {
-        // 获取所有锅数据
-        for (CauldronData data : manager.getAllCauldronData()) {
-            // 如果锅有数据，产生粒子效果
-            if (!data.getEffects().isEmpty()) {
-                generateCauldronParticles(serverLevel, data.getPos());
+        ParticleBudget budget = Config.OVER_LIMIT_BEHAVIOR.get() == OverLimitBehavior.POOL
+                ? new ParticleBudget(manager.getTable().density(),
+                        Config.MAX_CAULDRONS_PER_CHUNK.get(), Config.MAX_CAULDRONS_PER_REGION.get())
+                : null;
+
+        // 活跃锅集合只包含有效果的锅
+        for (long packedPos : manager.getActiveCauldronPositions()) {
+            if (budget != null && !budget.tryEmit(packedPos)) {
+                // 所在的超额区块或区域本轮已经产生了上限数量的粒子
+                continue;
             }
+            generateCauldronParticles(serverLevel, BlockPos.of(packedPos));
         }
     }
 
+
     /**
      * 玩家tick事件处理，检测玩家是否在水炼药锅中并处理效果收集
      * 添加了3秒冷却机制优化性能
@@ -94,16 +300,34 @@ public class StewMeEventHandler {
             UUID playerId = player.getUUID();
             long currentTick = serverLevel.getGameTime();
 
-            // 检查冷却时间
-            if (playerCooldowns.containsKey(playerId)) {
-                long cooldownUntil = playerCooldowns.get(playerId);
-                if (currentTick < cooldownUntil) {
-                    // 还在冷却期内，跳过处理
+            // 转移会话进行中：仍在同一个锅内且未到采样时间时只记录本tick属于会话
+            CauldronSession<Player, ServerLevel> session = players.getSession(playerId);
+            if (session != null) {
+                BlockPos pos = player.blockPosition();
+                // 锅可能被活塞、爆炸、取水等方式改变而不触发破坏事件，每tick确认仍是加热的满水锅
+                boolean inside = !session.isStale() && session.targets(serverLevel, pos.asLong())
+                        && isHeatedFullCauldron(serverLevel, pos);
+                if (inside) {
+                    session.tickAt(currentTick);
+                    if (currentTick < session.getSampleTick()) {
+                        return;
+                    }
+                    // 采样或有效果耗尽：结算到本tick（含），锅数据仍存在时开始新的会话
+                    settleSession(playerId);
+                    CauldronData data = StewMeDataManager.get(serverLevel).getCauldronData(pos);
+                    if (data != null) {
+                        startSession(player, serverLevel, data, currentTick);
+                    }
                     return;
-                } else {
-                    // 冷却期结束，移除记录
-                    playerCooldowns.remove(playerId);
                 }
+                // 离开锅、锅已改变或效果被外部修改：本tick不属于会话，结算到上一tick后按逐tick规则处理本tick
+                settleSession(playerId);
+            }
+
+            // 检查冷却时间，冷却期结束的记录会被移除
+            if (players.isCoolingDown(playerId, currentTick)) {
+                // 还在冷却期内，跳过处理
+                return;
             }
 
             // 获取玩家所在的位置
@@ -125,14 +349,14 @@ public class StewMeEventHandler {
                     CauldronData cauldronData = manager.getCauldronData(playerPos);
 
                     // 锅有数据时产生粒子效果（无论下方是什么方块）
-                    if (cauldronData != null && !cauldronData.getEffects().isEmpty()) {
+                    if (cauldronData != null && !cauldronData.isEmpty()) {
                         generateCauldronParticles(serverLevel, playerPos);
                     }
 
                     // 检查玩家是否有效果，如果没有则跳过处理
                     if (player.getActiveEffects().isEmpty()) {
                         // 玩家没有效果，设置冷却时间后返回
-                        playerCooldowns.put(playerId, currentTick + COOLDOWN_TICKS);
+                        players.startCooldown(playerId, currentTick + COOLDOWN_TICKS);
                         return;
                     }
 
@@ -142,17 +366,28 @@ public class StewMeEventHandler {
                         reduceDebuffTime(player);
                     } else if (belowState.getBlock() == Blocks.MAGMA_BLOCK || belowState.getBlock() == Blocks.LAVA) {
                         // 下方为岩浆块或岩浆：减少玩家身上所有效果时间并累加到锅数据中
+                        // 先结算同一个锅中其他玩家的会话，再按顺序累加本玩家本tick的转移
+                        settleSessionsAt(serverLevel, playerPos);
+                        cauldronData = manager.getCauldronData(playerPos);
                         if (cauldronData == null) {
+                            // 拒绝模式下，区块或区域的锅数量达到上限时不再新建锅数据
+                            if (!allowsNewCauldronData(manager, playerPos)) {
+                                player.displayClientMessage(Component.translatable("message.stew_me.cauldron_limit"), true);
+                                players.startCooldown(playerId, currentTick + COOLDOWN_TICKS);
+                                return;
+                            }
                             cauldronData = new CauldronData(playerPos);
                             manager.putCauldronData(cauldronData);
                         }
 
                         reduceAndAccumulateEffects(player, cauldronData);
+                        // 之后的tick由转移会话一次性结算
+                        startSession(player, serverLevel, cauldronData, currentTick);
                     }
                 }
             } else {
                 // 玩家不在锅内，设置3秒冷却时间
-                playerCooldowns.put(playerId, currentTick + COOLDOWN_TICKS);
+                players.startCooldown(playerId, currentTick + COOLDOWN_TICKS);
             }
         }
     }
@@ -213,6 +448,8 @@ public class StewMeEventHandler {
 
             // 检查点击的是水炼药锅
             if (state.getBlock() == Blocks.WATER_CAULDRON) {
+                // 先结算站在该锅中的玩家，保证盛出的效果包含到当前为止的转移
+                settleSessionsAt(serverLevel, pos);
                 StewMeDataManager manager = StewMeDataManager.get(serverLevel);
                 CauldronData data = manager.getCauldronData(pos);
 
@@ -241,12 +478,12 @@ public class StewMeEventHandler {
                     int waterLevel = state.getValue(LayeredCauldronBlock.LEVEL);
 
                     // 必须有水和效果数据
-                    if (waterLevel == 3 && data != null && !data.getEffects().isEmpty()) {
+                    if (waterLevel == 3 && data != null && !data.isEmpty()) {
                         // 创建谜之炖菜，效果数据直接存储在Lore中
                         ItemStack mysteryStew = MysteryStewItem.createMysteryStew(data.getEffects());
 
                         // 移除锅数据并消耗水和碗
-                        manager.removeCauldronData(pos);
+                        manager.drainCauldronData(pos);
                         serverLevel.setBlock(pos, Blocks.CAULDRON.defaultBlockState(), 3);
 
                         // 给予玩家炖菜并消耗碗
@@ -264,11 +501,15 @@ public class StewMeEventHandler {
 
     /**
      * 方块破坏事件处理，水炼药锅被破坏时移除数据
+     * 更新：锅或下方热源被破坏时结算站在锅中的玩家
      * @param event 方块破坏事件
      */
     @SubscribeEvent
     public void onBlockBreak(BlockEvent.BreakEvent event) {
         if (event.getLevel() instanceof ServerLevel serverLevel) {
+            settleSessionsAt(serverLevel, event.getPos());
+            settleSessionsAt(serverLevel, event.getPos().above());
+
             // 检查破坏的是水炼药锅
             if (event.getState().getBlock() == Blocks.WATER_CAULDRON) {
                 StewMeDataManager manager = StewMeDataManager.get(serverLevel);
@@ -277,6 +518,136 @@ public class StewMeEventHandler {
         }
     }
 
+    /**
+     * 检查位置是否为满水且下方为岩浆块或岩浆的炼药锅
+     */
+    private boolean isHeatedFullCauldron(ServerLevel serverLevel, BlockPos pos) {
+        BlockState state = serverLevel.getBlockState(pos);
+        if (state.getBlock() != Blocks.WATER_CAULDRON || state.getValue(LayeredCauldronBlock.LEVEL) != 3) {
+            return false;
+        }
+        BlockState belowState = serverLevel.getBlockState(pos.below());
+        return belowState.getBlock() == Blocks.MAGMA_BLOCK || belowState.getBlock() == Blocks.LAVA;
+    }
+
+    /**
+     * 检查是否可以新建锅数据：拒绝模式下区块或区域的锅数量达到上限时不允许
+     */
+    private boolean allowsNewCauldronData(StewMeDataManager manager, BlockPos pos) {
+        return Config.OVER_LIMIT_BEHAVIOR.get() != OverLimitBehavior.REFUSE
+                || manager.allowsNewCauldron(pos, Config.MAX_CAULDRONS_PER_CHUNK.get(), Config.MAX_CAULDRONS_PER_REGION.get());
+    }
+
+    /**
+     * 检查锅中是否还有其他玩家，或已有其他玩家的会话指向该锅
+     */
+    private boolean isCauldronShared(Player player, ServerLevel serverLevel, BlockPos pos) {
+        long packedPos = pos.asLong();
+        for (Player other : serverLevel.players()) {
+            if (other != player && other.blockPosition().asLong() == packedPos) {
+                return true;
+            }
+        }
+        return players.anySession(session -> session.getPlayer() != player && session.targets(serverLevel, packedPos));
+    }
+
+    /**
+     * 在本tick的逐tick转移之后开始转移会话，记录玩家当前的效果和锅的状态
+     * 会话只在锅中只有一个玩家时精确，锅中有其他玩家时不开始会话，继续逐tick转移
+     * @param player 站在锅中的玩家
+     * @param serverLevel 服务器世界
+     * @param cauldronData 锅数据
+     * @param currentTick 当前游戏时间
+     */
+    private void startSession(Player player, ServerLevel serverLevel, CauldronData cauldronData, long currentTick) {
+        if (isCauldronShared(player, serverLevel, cauldronData.getPos())) {
+            return;
+        }
+        List<MobEffectInstance> effects = new ArrayList<>(player.getActiveEffects());
+        int[] effectIds = new int[effects.size()];
+        int[] levels = new int[effects.size()];
+        int[] durations = new int[effects.size()];
+        for (int i = 0; i < effects.size(); i++) {
+            MobEffectInstance effect = effects.get(i);
+            effectIds[i] = CauldronData.effectId(effect.getEffect());
+            levels[i] = effect.getAmplifier();
+            // 无限时间的效果为负数，不会加入会话
+            durations[i] = effect.getDuration();
+        }
+
+        CauldronSession<Player, ServerLevel> session = CauldronSession.start(player, serverLevel,
+                cauldronData.getPos().asLong(), currentTick, effectIds, levels, durations, cauldronData.getState());
+        if (session != null) {
+            players.putSession(player.getUUID(), session);
+        }
+    }
+
+    /**
+     * 结算并结束玩家的转移会话：把到最近一次属于会话的玩家tick（含）为止的转移结果写入锅数据，并从玩家效果中扣除
+     * 效果事件可能在世界tick中途触发，衰减按锅数据实际执行过的最后一次衰减计算
+     * @param playerId 玩家UUID
+     */
+    private void settleSession(UUID playerId) {
+        CauldronSession<Player, ServerLevel> session = players.removeSession(playerId);
+        if (session == null) {
+            return;
+        }
+        ServerLevel serverLevel = session.getLevel();
+        StewMeDataManager manager = StewMeDataManager.get(serverLevel);
+        BlockPos pos = BlockPos.of(session.getPos());
+        CauldronData cauldronData = manager.getCauldronData(pos);
+        if (cauldronData == null && serverLevel.isLoaded(pos)
+                && serverLevel.getBlockState(pos).getBlock() == Blocks.WATER_CAULDRON
+                && allowsNewCauldronData(manager, pos)) {
+            // 会话期间锅中效果已被自然衰减耗尽并移除，仍是水炼药锅且未超出配额时重新建立
+            cauldronData = new CauldronData(pos);
+            manager.putCauldronData(cauldronData);
+        }
+
+        adjustingEffects = true;
+        try {
+            session.settle(cauldronData != null ? cauldronData.getState() : null, manager.getDecayedThrough(), PLAYER_EFFECTS);
+        } finally {
+            adjustingEffects = false;
+        }
+    }
+
+    /**
+     * 结算所有站在指定锅中的玩家的会话
+     * @param serverLevel 服务器世界
+     * @param pos 锅的位置
+     */
+    private void settleSessionsAt(ServerLevel serverLevel, BlockPos pos) {
+        if (!players.hasSessions()) {
+            return;
+        }
+        long packedPos = pos.asLong();
+        for (UUID playerId : players.sessionPlayers()) {
+            if (players.getSession(playerId).targets(serverLevel, packedPos)) {
+                settleSession(playerId);
+            }
+        }
+    }
+
+    /**
+     * 玩家效果被外部修改时标记会话失效，下一次玩家tick时结算
+     */
+    private void invalidateSession(UUID playerId) {
+        if (!adjustingEffects) {
+            CauldronSession<Player, ServerLevel> session = players.getSession(playerId);
+            if (session != null) {
+                session.markStale();
+            }
+        }
+    }
+
+    /**
+     * 获取当前进行中的转移会话数量
+     */
+    public int getActiveSessionCount() {
+        return players.sessionCount();
+    }
+
     /**
      * 减少玩家身上debuff的时间（30tick）
      * 更新：如果玩家没有debuff，则跳过处理
@@ -312,7 +683,7 @@ public class StewMeEventHandler {
 
         // 然后更新这些效果
         for (MobEffectInstance effect : effectsToUpdate) {
-            int remainingTime = effect.getDuration() - 30; // 减少30tick
+            int remainingTime = BrewingRules.remainingAfterTransfer(effect.getDuration()); // 减少30tick
 
             if (remainingTime > 0) {
                 // 先移除旧效果，再添加新效果
@@ -348,7 +719,8 @@ public class StewMeEventHandler {
         effectsToProcess.addAll(player.getActiveEffects());
 
         for (MobEffectInstance effect : effectsToProcess) {
-            int remainingTime = effect.getDuration() - 30; // 减少30tick
+            // 减少30tick并累加到锅数据中，剩余不足30tick时全部转移
+            int remainingTime = cauldronData.absorbEffect(effect.getEffect(), effect.getAmplifier(), effect.getDuration());
             if (remainingTime > 0) {
                 // 先移除旧效果，再添加新效果
                 player.removeEffect(effect.getEffect());
@@ -360,12 +732,8 @@ public class StewMeEventHandler {
                         effect.isVisible(),
                         effect.showIcon()
                 ));
-
-                // 累加到锅数据中
-                cauldronData.addEffect(effect.getEffect(), effect.getAmplifier(), 30);
             } else {
                 player.removeEffect(effect.getEffect());
-                cauldronData.addEffect(effect.getEffect(), effect.getAmplifier(), effect.getDuration());
             }
         }
     }
@@ -0,0 +1,53 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BrewingRulesTest {
+
+    @Test
+    void mergeKeepsHigherLevel() {
+        assertEquals(2, BrewingRules.mergeLevel(2, 0));
+        assertEquals(3, BrewingRules.mergeLevel(1, 3));
+    }
+
+    @Test
+    void mergeCapsTime() {
+        assertEquals(130, BrewingRules.mergeTime(100, 30));
+        assertEquals(BrewingRules.MAX_EFFECT_TIME, BrewingRules.mergeTime(71990, 30));
+        assertEquals(BrewingRules.MAX_EFFECT_TIME, BrewingRules.mergeTime(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void transferTakesThirtyOrRemainder() {
+        // 与原逐tick实现一致：剩余大于30时转移30，否则转移全部并移除效果
+        assertEquals(30, BrewingRules.transferAmount(31));
+        assertEquals(1, BrewingRules.remainingAfterTransfer(31));
+        assertEquals(30, BrewingRules.transferAmount(30));
+        assertEquals(0, BrewingRules.remainingAfterTransfer(30));
+        assertEquals(7, BrewingRules.transferAmount(7));
+        assertEquals(0, BrewingRules.remainingAfterTransfer(7));
+    }
+
+    @Test
+    void decayCountsMatchDecayTicks() {
+        assertTrue(BrewingRules.isDecayTick(0));
+        assertTrue(BrewingRules.isDecayTick(-10));
+        assertFalse(BrewingRules.isDecayTick(15));
+        for (long from = -25; from < 25; from++) {
+            for (long to = from; to < from + 40; to++) {
+                int expected = 0;
+                for (long t = from + 1; t <= to; t++) {
+                    if (BrewingRules.isDecayTick(t)) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, BrewingRules.decaysBetween(from, to), "(" + from + ", " + to + "]");
+            }
+        }
+        assertEquals(0, BrewingRules.decaysBetween(20, 10));
+    }
+}
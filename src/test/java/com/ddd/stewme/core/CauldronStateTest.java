@@ -0,0 +1,130 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CauldronState与重构前CauldronData（以Holder为键的HashMap实现）语义的一致性测试
+ */
+class CauldronStateTest {
+
+    @Test
+    void addMergesLevelAndCapsTime() {
+        CauldronState state = new CauldronState();
+        state.addEffect(1, 0, 100);
+        state.addEffect(1, 2, 50);
+        state.addEffect(1, 1, 10);
+        assertEquals(1, state.size());
+        assertEquals(2, state.levelAt(0));
+        assertEquals(160, state.timeAt(0));
+
+        state.addEffect(2, 0, 100_000);
+        assertEquals(BrewingRules.MAX_EFFECT_TIME, state.timeAt(state.indexOf(2)));
+        state.addEffect(2, 0, 30);
+        assertEquals(BrewingRules.MAX_EFFECT_TIME, state.timeAt(state.indexOf(2)));
+    }
+
+    @Test
+    void decayRemovesExhaustedEffects() {
+        CauldronState state = new CauldronState();
+        state.addEffect(1, 0, 1);
+        state.addEffect(2, 0, 2);
+        assertEquals(1, state.decay());
+        assertEquals(1, state.size());
+        assertEquals(1, state.timeAt(state.indexOf(2)));
+        assertEquals(1, state.decay());
+        assertTrue(state.isEmpty());
+    }
+
+    @Test
+    void absorbMatchesOriginalTransfer() {
+        CauldronState state = new CauldronState();
+        assertEquals(70, state.absorb(1, 1, 100));
+        assertEquals(30, state.timeAt(0));
+        // 剩余不足30tick时全部转移，玩家效果被移除
+        assertEquals(0, state.absorb(1, 0, 12));
+        assertEquals(42, state.timeAt(0));
+        assertEquals(1, state.levelAt(0));
+    }
+
+    @Test
+    void randomOperationsMatchOriginalImplementation() {
+        Random random = new Random(2026);
+        for (int round = 0; round < 200; round++) {
+            CauldronState state = new CauldronState();
+            OriginalCauldron original = new OriginalCauldron();
+            for (int step = 0; step < 500; step++) {
+                int effectId = random.nextInt(12);
+                int level = random.nextInt(4);
+                switch (random.nextInt(3)) {
+                    case 0 -> {
+                        int time = random.nextInt(3) == 0 ? random.nextInt(80_000) : random.nextInt(200);
+                        state.addEffect(effectId, level, time);
+                        original.addEffect(effectId, level, time);
+                    }
+                    case 1 -> {
+                        int duration = 1 + random.nextInt(120);
+                        assertEquals(original.absorb(effectId, level, duration), state.absorb(effectId, level, duration));
+                    }
+                    default -> {
+                        state.decay();
+                        original.tickEffects();
+                    }
+                }
+                assertEquals(original.effects, snapshot(state));
+            }
+        }
+    }
+
+    private static Map<Integer, OriginalCauldron.EffectData> snapshot(CauldronState state) {
+        Map<Integer, OriginalCauldron.EffectData> effects = new HashMap<>();
+        state.forEach((effectId, level, time) -> effects.put(effectId, new OriginalCauldron.EffectData(level, time)));
+        return effects;
+    }
+
+    /**
+     * 重构前CauldronData和reduceAndAccumulateEffects的规则，效果键换成int
+     */
+    private static class OriginalCauldron {
+        final Map<Integer, EffectData> effects = new HashMap<>();
+
+        void addEffect(int effect, int level, int time) {
+            EffectData existing = effects.get(effect);
+            if (existing != null) {
+                int newLevel = Math.max(existing.level, level);
+                int newTime = Math.min(existing.time + time, 72000);
+                effects.put(effect, new EffectData(newLevel, newTime));
+            } else {
+                effects.put(effect, new EffectData(level, Math.min(time, 72000)));
+            }
+        }
+
+        void tickEffects() {
+            effects.entrySet().removeIf(entry -> {
+                EffectData data = entry.getValue();
+                data = new EffectData(data.level, data.time - 1);
+                entry.setValue(data);
+                return data.time <= 0;
+            });
+        }
+
+        int absorb(int effect, int level, int duration) {
+            int remainingTime = duration - 30;
+            if (remainingTime > 0) {
+                addEffect(effect, level, 30);
+                return remainingTime;
+            }
+            addEffect(effect, level, duration);
+            return 0;
+        }
+
+        record EffectData(int level, int time) {
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CauldronTableTest {
+
+    @Test
+    void getOrCreateReturnsSameState() {
+        CauldronTable table = new CauldronTable();
+        long pos = PackedPos.pack(10, 64, -3);
+        assertNull(table.get(pos));
+        CauldronState state = table.getOrCreate(pos);
+        assertSame(state, table.getOrCreate(pos));
+        assertSame(state, table.get(pos));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void tickDecaysAndRemovesEmptyCauldrons() {
+        CauldronTable table = new CauldronTable();
+        long short1 = PackedPos.pack(0, 64, 0);
+        long long1 = PackedPos.pack(1, 64, 0);
+        table.getOrCreate(short1).addEffect(1, 0, 1);
+        table.getOrCreate(long1).addEffect(1, 0, 5);
+
+        assertFalse(new CauldronTable().tick());
+        assertTrue(table.tick());
+        assertNull(table.get(short1));
+        assertEquals(4, table.get(long1).timeAt(0));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void removeAndDrainDropState() {
+        CauldronTable table = new CauldronTable();
+        long a = PackedPos.pack(0, 64, 0);
+        long b = PackedPos.pack(0, 65, 0);
+        table.getOrCreate(a).addEffect(1, 0, 100);
+        table.getOrCreate(b).addEffect(2, 0, 100);
+
+        assertNotNull(table.remove(a));
+        assertNull(table.remove(a));
+        assertNotNull(table.drain(b));
+        assertNull(table.drain(b));
+        assertTrue(table.isEmpty());
+        assertEquals(0, table.density().chunkCount());
+    }
+
+    @Test
+    void quotaCountsPerChunkAndRegion() {
+        CauldronTable table = new CauldronTable();
+        // 同一区块内的两个锅
+        table.getOrCreate(PackedPos.pack(0, 64, 0)).addEffect(1, 0, 100);
+        table.getOrCreate(PackedPos.pack(15, 64, 15)).addEffect(1, 0, 100);
+        // 同一区域、不同区块
+        table.getOrCreate(PackedPos.pack(16, 64, 0)).addEffect(1, 0, 100);
+
+        long sameChunk = PackedPos.pack(8, 70, 8);
+        long sameRegion = PackedPos.pack(100, 64, 100);
+        long otherRegion = PackedPos.pack(512, 64, 0);
+        assertEquals(2, table.density().chunkCountAt(sameChunk));
+        assertEquals(3, table.density().regionCountAt(sameRegion));
+        assertEquals(0, table.density().regionCountAt(otherRegion));
+
+        assertFalse(table.allowsNew(sameChunk, 2, 0));
+        assertTrue(table.allowsNew(sameChunk, 3, 0));
+        assertFalse(table.allowsNew(sameRegion, 0, 3));
+        assertTrue(table.allowsNew(otherRegion, 1, 1));
+        // 已存在的锅不受配额限制
+        assertTrue(table.allowsNew(PackedPos.pack(0, 64, 0), 1, 1));
+        // 0表示不限制
+        assertTrue(table.allowsNew(sameChunk, 0, 0));
+    }
+
+    @Test
+    void poolingEmitsAtMostTheCapPerChunkAndRegion() {
+        CauldronTable table = new CauldronTable();
+        // 区块(0,0)恰好达到上限，区块(1,0)超出上限一个
+        for (int x = 0; x < 4; x++) {
+            table.getOrCreate(PackedPos.pack(x, 64, 0)).addEffect(1, 0, 100);
+        }
+        for (int x = 16; x < 21; x++) {
+            table.getOrCreate(PackedPos.pack(x, 64, 0)).addEffect(1, 0, 100);
+        }
+
+        ParticleBudget budget = new ParticleBudget(table.density(), 4, 0);
+        int atCap = 0;
+        int overCap = 0;
+        for (int x = 0; x < 4; x++) {
+            atCap += budget.tryEmit(PackedPos.pack(x, 64, 0)) ? 1 : 0;
+        }
+        for (int x = 16; x < 21; x++) {
+            overCap += budget.tryEmit(PackedPos.pack(x, 64, 0)) ? 1 : 0;
+        }
+        assertEquals(4, atCap);
+        assertEquals(4, overCap);
+
+        // 超额区域中所有区块的粒子合计不超过区域上限
+        budget = new ParticleBudget(table.density(), 4, 6);
+        int inRegion = 0;
+        for (int x = 0; x < 4; x++) {
+            inRegion += budget.tryEmit(PackedPos.pack(x, 64, 0)) ? 1 : 0;
+        }
+        for (int x = 16; x < 21; x++) {
+            inRegion += budget.tryEmit(PackedPos.pack(x, 64, 0)) ? 1 : 0;
+        }
+        assertEquals(6, inRegion);
+
+        // 0表示不限制
+        budget = new ParticleBudget(table.density(), 0, 0);
+        for (int x = 16; x < 21; x++) {
+            assertTrue(budget.tryEmit(PackedPos.pack(x, 64, 0)));
+        }
+    }
+
+    @Test
+    void emptyStatesDoNotCountTowardsQuota() {
+        CauldronTable table = new CauldronTable();
+        long pos = PackedPos.pack(0, 64, 0);
+        long neighbour = PackedPos.pack(1, 64, 0);
+        table.getOrCreate(pos);
+        assertEquals(0, table.density().chunkCountAt(neighbour));
+        assertTrue(table.allowsNew(neighbour, 1, 1));
+
+        table.get(pos).addEffect(1, 0, 1);
+        assertEquals(1, table.density().chunkCountAt(neighbour));
+        assertFalse(table.allowsNew(neighbour, 1, 0));
+
+        // 衰减耗尽后移除，计数随之释放
+        table.tick();
+        assertEquals(0, table.density().chunkCountAt(neighbour));
+
+        // 替换为空状态时释放旧状态的计数
+        table.getOrCreate(pos).addEffect(1, 0, 100);
+        table.put(pos, new CauldronState());
+        assertEquals(0, table.density().regionCountAt(neighbour));
+    }
+
+    @Test
+    void pagedCauldronsKeepTheirDensityCount() {
+        CauldronTable table = new CauldronTable();
+        List<String> events = new ArrayList<>();
+        table.addListener(new CauldronListener() {
+            @Override
+            public void onCreated(long pos) {
+                events.add("created");
+            }
+
+            @Override
+            public void onEffectAccumulated(long pos, int effectId, int level, int time) {
+                events.add("accumulated");
+            }
+
+            @Override
+            public void onRemoved(long pos) {
+                events.add("removed");
+            }
+
+            @Override
+            public void onPagedIn(long pos) {
+                events.add("pagedIn");
+            }
+
+            @Override
+            public void onPagedOut(long pos) {
+                events.add("pagedOut");
+            }
+        });
+        long pos = PackedPos.pack(0, 64, 0);
+        long neighbour = PackedPos.pack(1, 64, 0);
+        // 打开映射文件时已计入密度索引
+        table.density().add(pos);
+
+        CauldronState state = new CauldronState();
+        state.addEffect(1, 0, 100);
+        table.adopt(pos, state);
+        assertEquals(List.of("pagedIn"), events);
+        assertEquals(1, table.density().chunkCountAt(neighbour));
+        assertTrue(table.takeChanged().isEmpty());
+
+        // 衰减不算修改，未修改的锅可以换出且保留计数
+        table.tick();
+        assertTrue(table.takeChanged().isEmpty());
+        assertEquals(List.of(pos), table.evictIf(p -> true));
+        assertNull(table.get(pos));
+        assertEquals(1, table.density().chunkCountAt(neighbour));
+
+        // 再次读入后修改，保存之前不会被换出
+        table.adopt(pos, state);
+        state.addEffect(2, 0, 50);
+        assertTrue(table.evictIf(p -> true).isEmpty());
+        assertEquals(List.of(pos), table.takeChanged());
+        assertTrue(table.takeChanged().isEmpty());
+
+        // 读入的锅被移除时释放计数
+        table.remove(pos);
+        assertEquals(0, table.density().chunkCountAt(neighbour));
+        assertEquals(List.of("pagedIn", "pagedOut", "pagedIn", "accumulated", "removed"), events);
+    }
+}
@@ -0,0 +1,354 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 映射文件存储的读写、调色板重映射、扩容、未正常关闭恢复、写入被撕裂时的恢复、读取时补上衰减和按区块读取测试
+ */
+class MappedCauldronStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void remapsEffectsByNameAcrossRegistryChanges() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry before = new Registry();
+        before.register(1, "minecraft:speed");
+        before.register(2, "minecraft:haste");
+        before.register(3, "othermod:gone");
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, before)) {
+            store.put(PackedPos.pack(0, 64, 0), stateOf(1, 1, 600, 2, 0, 1200, 3, 2, 300), 0);
+            store.put(PackedPos.pack(1, 64, 0), stateOf(3, 0, 100), 0);
+        }
+
+        // 模组列表变化后运行时ID重新分配，其中一个效果已不存在
+        Registry after = new Registry();
+        after.register(7, "minecraft:haste");
+        after.register(9, "minecraft:speed");
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, after)) {
+            CauldronState state = store.get(PackedPos.pack(0, 64, 0), 0);
+            assertNotNull(state);
+            assertEquals(2, state.size());
+            assertEffect(state, 9, 1, 600);
+            assertEffect(state, 7, 0, 1200);
+
+            CauldronTable table = new CauldronTable();
+            store.loadInto(table, 0);
+            assertEquals(1, table.size());
+            // 效果全部不存在的锅从文件中删除
+            assertNull(store.get(PackedPos.pack(1, 64, 0), 0));
+            assertEquals(1, store.size());
+
+            // 新效果追加到调色板末尾，不影响已有下标
+            after.register(4, "minecraft:luck");
+            store.put(PackedPos.pack(2, 64, 0), stateOf(4, 0, 50, 7, 1, 60), 0);
+        }
+
+        Registry again = new Registry();
+        again.register(1, "minecraft:luck");
+        again.register(2, "minecraft:speed");
+        again.register(3, "minecraft:haste");
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, again)) {
+            assertEffect(store.get(PackedPos.pack(0, 64, 0), 0), 2, 1, 600);
+            CauldronState state = store.get(PackedPos.pack(2, 64, 0), 0);
+            assertEquals(2, state.size());
+            assertEffect(state, 1, 0, 50);
+            assertEffect(state, 3, 1, 60);
+        }
+    }
+
+    @Test
+    void growsAndReopensWithMultiPageCauldrons() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        for (int id = 0; id < 40; id++) {
+            registry.register(id, "stewme_test:effect_" + id);
+        }
+
+        Random random = new Random(30);
+        Map<Long, CauldronState> expected = new HashMap<>();
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            for (int i = 0; i < 5000; i++) {
+                long pos = PackedPos.pack(random.nextInt(4096), 64, random.nextInt(4096));
+                CauldronState state = new CauldronState();
+                int count = 1 + random.nextInt(3 * MappedCauldronStore.SLOTS_PER_RECORD);
+                for (int j = 0; j < count; j++) {
+                    state.addEffect(random.nextInt(40), random.nextInt(4), 1 + random.nextInt(72000));
+                }
+                store.put(pos, state, 0);
+                expected.put(pos, state);
+            }
+            // 缩小部分锅，多余的旧页被删除
+            for (Map.Entry<Long, CauldronState> entry : expected.entrySet()) {
+                if (random.nextInt(4) == 0) {
+                    CauldronState state = stateOf(random.nextInt(40), 0, 20);
+                    store.put(entry.getKey(), state, 0);
+                    entry.setValue(state);
+                }
+            }
+            assertEquals(expected.size(), store.size());
+        }
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            assertEquals(expected.size(), store.size());
+            for (Map.Entry<Long, CauldronState> entry : expected.entrySet()) {
+                assertSameState(entry.getValue(), store.get(entry.getKey(), 0));
+            }
+        }
+    }
+
+    @Test
+    void recountsAfterUncleanShutdown() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        registry.register(5, "minecraft:speed");
+
+        MappedCauldronStore crashed = MappedCauldronStore.open(file, registry);
+        for (int x = 0; x < 100; x++) {
+            crashed.put(PackedPos.pack(x, 64, 0), stateOf(5, 0, 100 + x), 0);
+        }
+        crashed.remove(PackedPos.pack(0, 64, 0));
+        crashed.flush();
+
+        // 未调用close，头部没有正常关闭标记
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            assertEquals(99, store.size());
+            assertNull(store.get(PackedPos.pack(0, 64, 0), 0));
+            assertEffect(store.get(PackedPos.pack(42, 64, 0), 0), 5, 0, 142);
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void keepsPreviousVersionWhenNewRecordIsTorn() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        registry.register(5, "minecraft:speed");
+        registry.register(6, "minecraft:haste");
+        long pos = PackedPos.pack(7, 64, 7);
+
+        MappedCauldronStore crashed = MappedCauldronStore.open(file, registry);
+        crashed.put(pos, stateOf(5, 0, 100), 0);
+        crashed.flush();
+        // 新版本写入后、落盘删除旧版本之前崩溃，且新记录被撕裂
+        crashed.put(pos, stateOf(5, 1, 900, 6, 0, 40), 0);
+        tearNewestPage(file, pos, 0);
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            assertEquals(1, store.size());
+            assertSameState(stateOf(5, 0, 100), store.get(pos, 0));
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void keepsPreviousMultiPageVersionWhenOnePageIsTorn() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        for (int id = 0; id < 40; id++) {
+            registry.register(id, "stewme_test:effect_" + id);
+        }
+        long pos = PackedPos.pack(-3, 70, 12);
+        CauldronState before = new CauldronState();
+        CauldronState after = new CauldronState();
+        for (int id = 0; id < 20; id++) {
+            before.addEffect(id, 0, 100 + id);
+            after.addEffect(id + 20, 1, 500 + id);
+        }
+
+        MappedCauldronStore crashed = MappedCauldronStore.open(file, registry);
+        crashed.put(pos, before, 0);
+        crashed.flush();
+        // 第0页完整，但后续页被撕裂，新版本不完整
+        crashed.put(pos, after, 0);
+        tearNewestPage(file, pos, 2);
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            assertEquals(1, store.size());
+            assertSameState(before, store.get(pos, 0));
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void keepsNewestCompleteVersionAfterCrash() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        registry.register(5, "minecraft:speed");
+        long pos = PackedPos.pack(0, 64, 0);
+
+        MappedCauldronStore crashed = MappedCauldronStore.open(file, registry);
+        crashed.put(pos, stateOf(5, 0, 100), 0);
+        crashed.flush();
+        // 新版本完整写入，旧版本尚未删除
+        crashed.put(pos, stateOf(5, 0, 300), 0);
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            assertEquals(1, store.size());
+            assertEffect(store.get(pos, 0), 5, 0, 300);
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void decaysOnReadLikeThePerTickTable() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        registry.register(5, "minecraft:speed");
+        registry.register(6, "minecraft:haste");
+        long pos = PackedPos.pack(4, 64, 4);
+
+        // 参考模型：锅一直在表中，每个衰减tick执行一次衰减
+        CauldronTable reference = new CauldronTable();
+        reference.put(pos, stateOf(5, 0, 300, 6, 1, 35));
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            // 第103tick保存时衰减已执行到第100tick
+            store.put(pos, stateOf(5, 0, 300, 6, 1, 35), 100);
+        }
+
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            for (long now = 100; now <= 700; now++) {
+                if (now > 100 && BrewingRules.isDecayTick(now)) {
+                    reference.tick();
+                }
+                CauldronState expected = reference.get(pos);
+                CauldronState actual = store.get(pos, now);
+                if (expected == null) {
+                    assertTrue(actual.isEmpty(), "tick " + now);
+                } else {
+                    assertSameState(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void readsOnlyTheRequestedChunk() throws IOException {
+        Path file = dir.resolve("cauldrons.dat");
+        Registry registry = new Registry();
+        registry.register(5, "minecraft:speed");
+
+        Random random = new Random(30);
+        Map<Long, Set<Long>> byChunk = new HashMap<>();
+        try (MappedCauldronStore store = MappedCauldronStore.open(file, registry)) {
+            for (int i = 0; i < 3000; i++) {
+                long pos = PackedPos.pack(random.nextInt(128), 64 + random.nextInt(8), random.nextInt(128));
+                store.put(pos, stateOf(5, 0, 100 + i), 0);
+                byChunk.computeIfAbsent(DensityIndex.chunkKeyOf(pos), key -> new HashSet<>()).add(pos);
+            }
+            // 尚未删除的旧版本和已删除的锅都不会被读出
+            for (Set<Long> positions : byChunk.values()) {
+                long pos = positions.iterator().next();
+                store.put(pos, stateOf(5, 1, 20), 0);
+                if (random.nextBoolean()) {
+                    store.remove(pos);
+                    positions.remove(pos);
+                }
+            }
+
+            for (Map.Entry<Long, Set<Long>> entry : byChunk.entrySet()) {
+                Set<Long> read = new HashSet<>();
+                store.forEachInChunk(entry.getKey(), 0, (pos, state) -> {
+                    assertTrue(read.add(pos), "read twice");
+                    assertEquals(1, state.size());
+                });
+                assertEquals(entry.getValue(), read);
+            }
+        }
+    }
+
+    /**
+     * 模拟崩溃时写入被撕裂：修改一个锅最新版本中一页的效果数据而不更新CRC
+     */
+    private static void tearNewestPage(Path file, long pos, int page) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(MappedCauldronStore.RECORD_SIZE);
+            long newestOffset = -1;
+            long newest = -1;
+            for (long offset = MappedCauldronStore.HEADER_SIZE; offset + record.capacity() <= channel.size();
+                 offset += record.capacity()) {
+                record.clear();
+                channel.read(record, offset);
+                if (record.get(MappedCauldronStore.R_FLAG) == MappedCauldronStore.FLAG_USED
+                        && record.getLong(MappedCauldronStore.R_POS) == pos
+                        && record.get(MappedCauldronStore.R_PAGE) == page
+                        && record.getLong(MappedCauldronStore.R_GENERATION) > newest) {
+                    newest = record.getLong(MappedCauldronStore.R_GENERATION);
+                    newestOffset = offset;
+                }
+            }
+            assertTrue(newestOffset >= 0, "missing page " + page);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), newestOffset + MappedCauldronStore.R_SLOTS + 4);
+        }
+    }
+
+    private static CauldronState stateOf(int... effects) {
+        CauldronState state = new CauldronState();
+        for (int i = 0; i < effects.length; i += 3) {
+            state.addEffect(effects[i], effects[i + 1], effects[i + 2]);
+        }
+        return state;
+    }
+
+    private static void assertEffect(CauldronState state, int effectId, int level, int time) {
+        int index = state.indexOf(effectId);
+        assertTrue(index >= 0, "missing effect " + effectId);
+        assertEquals(level, state.levelAt(index));
+        assertEquals(time, state.timeAt(index));
+    }
+
+    private static void assertSameState(CauldronState expected, CauldronState actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEffect(actual, expected.effectIdAt(i), expected.levelAt(i), expected.timeAt(i));
+        }
+    }
+
+    /**
+     * 模拟游戏注册表，运行时ID与注册名的对应关系可以在两次打开之间改变
+     */
+    private static class Registry implements MappedCauldronStore.EffectNames {
+        private final Map<Integer, String> names = new HashMap<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        void register(int id, String name) {
+            names.put(id, name);
+            ids.put(name, id);
+        }
+
+        @Override
+        public String nameOf(int effectId) {
+            return names.get(effectId);
+        }
+
+        @Override
+        public int idOf(String name) {
+            return ids.getOrDefault(name, -1);
+        }
+    }
+}
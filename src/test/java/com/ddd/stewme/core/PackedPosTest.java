@@ -0,0 +1,62 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PackedPos与原版BlockPos.asLong位布局的一致性测试
+ */
+class PackedPosTest {
+
+    /**
+     * 原版BlockPos.asLong的实现：X占高26位，Z占中间26位，Y占低12位
+     */
+    private static long blockPosAsLong(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) y & 0xFFFL) | ((long) z & 0x3FFFFFFL) << 12;
+    }
+
+    @Test
+    void matchesBlockPosLayout() {
+        assertEquals(0L, PackedPos.pack(0, 0, 0));
+        assertEquals(1L << 38, PackedPos.pack(1, 0, 0));
+        assertEquals(1L, PackedPos.pack(0, 1, 0));
+        assertEquals(1L << 12, PackedPos.pack(0, 0, 1));
+        assertEquals(-1L, PackedPos.pack(-1, -1, -1));
+    }
+
+    @Test
+    void roundTripsWorldBounds() {
+        // 世界边界（±30000000）和建筑高度范围（-2048..2047）内的极值
+        int[] xs = {-30_000_000, -1, 0, 1, 29_999_999, -33_554_432, 33_554_431};
+        int[] ys = {-2048, -64, -1, 0, 1, 319, 2047};
+        for (int x : xs) {
+            for (int y : ys) {
+                for (int z : xs) {
+                    assertRoundTrip(x, y, z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundTripsRandomPositions() {
+        Random random = new Random(26);
+        for (int i = 0; i < 100_000; i++) {
+            int x = random.nextInt(1 << 26) - (1 << 25);
+            int y = random.nextInt(1 << 12) - (1 << 11);
+            int z = random.nextInt(1 << 26) - (1 << 25);
+            assertRoundTrip(x, y, z);
+        }
+    }
+
+    private static void assertRoundTrip(int x, int y, int z) {
+        long packed = PackedPos.pack(x, y, z);
+        assertEquals(blockPosAsLong(x, y, z), packed);
+        assertEquals(x, PackedPos.x(packed));
+        assertEquals(y, PackedPos.y(packed));
+        assertEquals(z, PackedPos.z(packed));
+    }
+}
@@ -0,0 +1,311 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 长时间运行的内存有界性测试，不需要启动游戏
+ * 模拟玩家加入、退出、切换维度、进出岩浆锅、盛出锅，以及锅被破坏事件或爆炸、活塞等方式移除，
+ * 使用与事件处理器相同的CauldronTable、PlayerTracker和CauldronSession记录，会话的开始和结算与事件处理器走同一套代码
+ * 每模拟一小时在GC后采样一次堆内存，保留的内存必须以在线玩家和世界中实际存在的锅为上限，且不随时间增长
+ * 模拟时长可通过系统属性stewme.soak.hours调整
+ */
+class SoakTest {
+    private static final int TICKS_PER_HOUR = 72000;
+    private static final int HOURS = Integer.getInteger("stewme.soak.hours", 6);
+
+    private static final int ONLINE_PLAYERS = 200;
+    private static final int WORLD_CAULDRONS = 3000;
+    // 锅分布在64x64区块的范围内
+    private static final int WORLD_BLOCKS = 64 * 16;
+    private static final int MAX_PER_CHUNK = 16;
+    private static final int MAX_PER_REGION = 512;
+
+    // 与StewMeEventHandler一致的间隔
+    private static final long COOLDOWN_TICKS = 60;
+    private static final long VALIDATE_INTERVAL_TICKS = 200;
+
+    // 内存上限：每个在线玩家、每个存在的锅，以及测量误差
+    private static final long MAX_BYTES_PER_PLAYER = 2048;
+    private static final long MAX_BYTES_PER_CAULDRON = 1024;
+    private static final long SLACK_BYTES = 1 << 20;
+
+    private final Random random = new Random(29);
+    private CauldronTable table = new CauldronTable();
+    private PlayerTracker<CauldronSession<SimPlayer, CauldronTable>> tracker = new PlayerTracker<>();
+    // 当前模拟的游戏时间，以及锅表实际执行过的最后一次自然衰减
+    private long now;
+    private long decayedThrough;
+    // 模拟玩家的效果按到期时间保存，会话期间自然减少不需要逐tick执行
+    private final CauldronSession.PlayerEffects<SimPlayer> effects = new CauldronSession.PlayerEffects<>() {
+        @Override
+        public int durationOf(SimPlayer player, int effectId) {
+            int i = player.indexOf(effectId);
+            return i >= 0 ? (int) Math.max(0, player.expiresAt[i] - now) : 0;
+        }
+
+        @Override
+        public void setDuration(SimPlayer player, int effectId, int duration) {
+            int i = player.indexOf(effectId);
+            if (i >= 0) {
+                player.expiresAt[i] = now + duration;
+            }
+        }
+    };
+
+    // 模拟世界：固定数量的水炼药锅位置
+    private final long[] cauldrons = new long[WORLD_CAULDRONS];
+    private final Set<Long> world = new HashSet<>();
+    private final SimPlayer[] players = new SimPlayer[ONLINE_PLAYERS];
+
+    @Test
+    void retainedHeapStaysBoundedUnderChurn() {
+        for (int i = 0; i < WORLD_CAULDRONS; i++) {
+            cauldrons[i] = newCauldronPos();
+        }
+        for (int i = 0; i < ONLINE_PLAYERS; i++) {
+            players[i] = new SimPlayer();
+        }
+        long baseline = usedHeapAfterGc();
+
+        long tick = 1;
+        long firstSample = -1;
+        List<Long> samples = new ArrayList<>();
+        for (int hour = 1; hour <= HOURS; hour++) {
+            for (long end = (long) hour * TICKS_PER_HOUR; tick <= end; tick++) {
+                step(tick);
+            }
+
+            // 每小时的最后一个tick刚执行过失效锅校验，表中只剩世界中存在的锅
+            assertTrue(table.size() <= WORLD_CAULDRONS, "cauldron table grew past the world: " + table.size());
+            assertTrue(tracker.trackedPlayerCount() <= ONLINE_PLAYERS,
+                    "player records grew past online players: " + tracker.trackedPlayerCount());
+
+            long retained = usedHeapAfterGc() - baseline;
+            samples.add(retained);
+            long bound = ONLINE_PLAYERS * MAX_BYTES_PER_PLAYER + (long) WORLD_CAULDRONS * MAX_BYTES_PER_CAULDRON + SLACK_BYTES;
+            assertTrue(retained <= bound, "hour " + hour + ": retained " + retained + " bytes exceeds " + bound);
+            // 第一个小时用于达到稳定状态，之后不应继续增长
+            if (firstSample < 0) {
+                firstSample = retained;
+            } else {
+                assertTrue(retained - firstSample <= SLACK_BYTES,
+                        "hour " + hour + ": retained heap grew from " + firstSample + " to " + retained + " bytes");
+            }
+        }
+
+        // 分别释放玩家记录和锅表，测量稳定状态下每个玩家和每个锅实际占用的内存
+        int trackedPlayers = tracker.trackedPlayerCount();
+        int sessions = tracker.sessionCount();
+        long estimatedPlayerBytes = tracker.estimatedBytes(CauldronSession::estimatedBytes);
+        long beforePlayers = usedHeapAfterGc();
+        tracker = null;
+        long playerBytes = beforePlayers - usedHeapAfterGc();
+
+        int tableSize = table.size();
+        long estimatedTableBytes = table.estimatedBytes();
+        long beforeTable = usedHeapAfterGc();
+        table = null;
+        long tableBytes = beforeTable - usedHeapAfterGc();
+
+        long bytesPerPlayer = playerBytes / ONLINE_PLAYERS;
+        long bytesPerCauldron = tableSize > 0 ? tableBytes / tableSize : 0;
+        System.out.printf("[StewMe soak] %d simulated hours, retained heap per hour: %s%n", HOURS, samples);
+        System.out.printf("[StewMe soak] players: %d online, %d tracked, %d in sessions, %d bytes (%d bytes/player, estimated %d)%n",
+                ONLINE_PLAYERS, trackedPlayers, sessions, playerBytes, bytesPerPlayer, estimatedPlayerBytes);
+        System.out.printf("[StewMe soak] cauldrons: %d in table, %d bytes (%d bytes/cauldron, estimated %d)%n",
+                tableSize, tableBytes, bytesPerCauldron, tableSize > 0 ? estimatedTableBytes / tableSize : 0);
+        assertTrue(bytesPerPlayer <= MAX_BYTES_PER_PLAYER, "bytes per player: " + bytesPerPlayer);
+        assertTrue(bytesPerCauldron <= MAX_BYTES_PER_CAULDRON, "bytes per cauldron: " + bytesPerCauldron);
+    }
+
+    /**
+     * 模拟一个游戏tick，顺序与游戏一致：先执行世界tick（衰减、校验），再执行玩家tick
+     */
+    private void step(long tick) {
+        now = tick;
+        if (BrewingRules.isDecayTick(tick)) {
+            table.tick();
+            decayedThrough = tick;
+        }
+        if (tick % VALIDATE_INTERVAL_TICKS == 0) {
+            for (long pos : table.findStale(world::contains)) {
+                settleSessionsAt(pos);
+                table.remove(pos);
+            }
+        }
+        for (SimPlayer player : players) {
+            tickPlayer(player, tick);
+        }
+    }
+
+    private void tickPlayer(SimPlayer player, long tick) {
+        CauldronSession<SimPlayer, CauldronTable> session = tracker.getSession(player.id);
+        if (session != null) {
+            if (world.contains(session.getPos()) && tick < player.leaveTick) {
+                session.tickAt(tick);
+                if (tick >= session.getSampleTick()) {
+                    settleSession(player);
+                    startSession(player, session.getPos(), tick);
+                }
+            } else {
+                // 离开锅或锅已不存在：本tick不属于会话，结算到上一tick
+                settleSession(player);
+                tracker.startCooldown(player.id, tick + COOLDOWN_TICKS);
+            }
+            return;
+        }
+        if (tick < player.nextActionTick) {
+            // 不在锅内的玩家：冷却结束后重新设置冷却
+            if (!tracker.isCoolingDown(player.id, tick)) {
+                tracker.startCooldown(player.id, tick + COOLDOWN_TICKS);
+            }
+            return;
+        }
+        player.nextActionTick = tick + 1 + random.nextInt(600);
+
+        int action = random.nextInt(100);
+        if (action < 45) {
+            enterCauldron(player, cauldrons[random.nextInt(WORLD_CAULDRONS)], tick);
+        } else if (action < 60) {
+            // 退出服务器，由新的玩家加入
+            settleSession(player);
+            tracker.forget(player.id);
+            player.id = UUID.randomUUID();
+        } else if (action < 70) {
+            // 切换维度，与事件处理器一致先结算会话
+            settleSession(player);
+            tracker.forget(player.id);
+        } else if (action < 80) {
+            // 用碗盛出锅中效果
+            long pos = cauldrons[random.nextInt(WORLD_CAULDRONS)];
+            settleSessionsAt(pos);
+            table.drain(pos);
+        } else if (action < 90) {
+            // 破坏锅，触发破坏事件，在别处放置新的锅
+            int index = random.nextInt(WORLD_CAULDRONS);
+            settleSessionsAt(cauldrons[index]);
+            table.remove(cauldrons[index]);
+            replaceCauldron(index);
+        } else {
+            // 爆炸、活塞或指令移除锅，不触发破坏事件，只能由定期校验清理
+            replaceCauldron(random.nextInt(WORLD_CAULDRONS));
+        }
+    }
+
+    private void enterCauldron(SimPlayer player, long pos, long tick) {
+        if (table.get(pos) == null && !table.allowsNew(pos, MAX_PER_CHUNK, MAX_PER_REGION)) {
+            tracker.startCooldown(player.id, tick + COOLDOWN_TICKS);
+            return;
+        }
+        // 与事件处理器一致，先结算同一个锅中其他玩家的会话；模拟中被结算的玩家之后不再转移
+        settleSessionsAt(pos);
+        int count = 1 + random.nextInt(4);
+        player.effectIds = new int[count];
+        player.levels = new int[count];
+        player.expiresAt = new long[count];
+        int[] durations = new int[count];
+        // 进入锅的tick按逐tick规则转移一次
+        CauldronState state = table.getOrCreate(pos);
+        for (int i = 0; i < count; i++) {
+            player.effectIds[i] = i * 7 + random.nextInt(7);
+            player.levels[i] = random.nextInt(3);
+            durations[i] = state.absorb(player.effectIds[i], player.levels[i], 1 + random.nextInt(2400));
+            player.expiresAt[i] = tick + durations[i];
+        }
+        player.leaveTick = tick + 1 + random.nextInt(1200);
+        startSession(player, pos, tick);
+    }
+
+    private void startSession(SimPlayer player, long pos, long tick) {
+        CauldronState state = table.get(pos);
+        if (state == null) {
+            return;
+        }
+        int[] durations = new int[player.effectIds.length];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = effects.durationOf(player, player.effectIds[i]);
+        }
+        CauldronSession<SimPlayer, CauldronTable> session = CauldronSession.start(player, table, pos, tick,
+                player.effectIds, player.levels, durations, state);
+        if (session != null) {
+            tracker.putSession(player.id, session);
+        }
+    }
+
+    /**
+     * 与事件处理器一致：锅数据已被衰减移除但锅仍存在且未超出配额时重新建立，再结算会话
+     */
+    private void settleSession(SimPlayer player) {
+        CauldronSession<SimPlayer, CauldronTable> session = tracker.removeSession(player.id);
+        if (session == null) {
+            return;
+        }
+        long pos = session.getPos();
+        CauldronState state = table.get(pos);
+        if (state == null && world.contains(pos) && table.allowsNew(pos, MAX_PER_CHUNK, MAX_PER_REGION)) {
+            state = table.getOrCreate(pos);
+        }
+        session.settle(state, decayedThrough, effects);
+    }
+
+    private void settleSessionsAt(long pos) {
+        for (SimPlayer player : players) {
+            CauldronSession<SimPlayer, CauldronTable> session = tracker.getSession(player.id);
+            if (session != null && session.targets(table, pos)) {
+                settleSession(player);
+            }
+        }
+    }
+
+    private void replaceCauldron(int index) {
+        world.remove(cauldrons[index]);
+        cauldrons[index] = newCauldronPos();
+    }
+
+    private long newCauldronPos() {
+        long pos;
+        do {
+            pos = PackedPos.pack(random.nextInt(WORLD_BLOCKS), 64, random.nextInt(WORLD_BLOCKS));
+        } while (!world.add(pos));
+        return pos;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static class SimPlayer {
+        UUID id = UUID.randomUUID();
+        long nextActionTick;
+        long leaveTick;
+        int[] effectIds;
+        int[] levels;
+        long[] expiresAt;
+
+        int indexOf(int effectId) {
+            for (int i = 0; i < effectIds.length; i++) {
+                if (effectIds[i] == effectId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
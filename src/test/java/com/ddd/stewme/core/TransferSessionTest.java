@@ -0,0 +1,225 @@
+package com.ddd.stewme.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 转移会话与逐tick转移的等价性测试
+ * 参考模型按游戏中的顺序逐tick执行：先执行锅表的自然衰减，再执行玩家tick（效果自然减少1，然后转移到锅中）
+ * 会话模型使用与事件处理器相同的CauldronSession：进入锅的tick按逐tick规则转移一次后开始会话，
+ * 采样或有效果耗尽时结算到当前tick并重新开始，离开锅的tick结算到上一tick；效果在世界tick中途被刷新时（例如信标），结算发生在该tick的自然衰减之前，
+ * 因此结算使用实际已经执行过的最后一次衰减，而不是当前游戏时间
+ */
+class TransferSessionTest {
+    private static final int CASES = 100_000;
+    private static final long POS = PackedPos.pack(3, 64, -7);
+
+    @Test
+    void matchesPerTickTransfer() {
+        Random random = new Random(31);
+        for (int c = 0; c < CASES; c++) {
+            runCase(random, c);
+        }
+    }
+
+    private void runCase(Random random, int c) {
+        long enterTick = random.nextInt(1000);
+        int count = 1 + random.nextInt(4);
+        int[] effectIds = new int[count];
+        int[] levels = new int[count];
+        int[] durations = new int[count];
+        for (int i = 0; i < count; i++) {
+            effectIds[i] = i * 5 + random.nextInt(5);
+            levels[i] = random.nextInt(3);
+            durations[i] = randomDuration(random);
+        }
+
+        CauldronTable reference = new CauldronTable();
+        CauldronTable table = new CauldronTable();
+        // 锅中已有的效果，部分与玩家效果相同，部分接近时间上限
+        int existing = random.nextInt(4);
+        for (int i = 0; i < existing; i++) {
+            int effectId = random.nextInt(3) == 0 ? 100 + i : effectIds[random.nextInt(count)];
+            int level = random.nextInt(3);
+            int time = random.nextBoolean() ? 1 + random.nextInt(40) : BrewingRules.MAX_EFFECT_TIME - random.nextInt(200);
+            reference.getOrCreate(POS).addEffect(effectId, level, time);
+            table.getOrCreate(POS).addEffect(effectId, level, time);
+        }
+
+        long leaveTick = enterTick + 1 + random.nextInt(random.nextBoolean() ? 60 : 3000);
+
+        // 参考模型：逐tick转移
+        int[] expected = durations.clone();
+        for (long tick = enterTick; tick < leaveTick; tick++) {
+            if (BrewingRules.isDecayTick(tick)) {
+                reference.tick();
+            }
+            for (int i = 0; i < count; i++) {
+                if (expected[i] > 0 && --expected[i] > 0) {
+                    expected[i] = reference.getOrCreate(POS).absorb(effectIds[i], levels[i], expected[i]);
+                }
+            }
+        }
+
+        // 会话模型：玩家身上的效果在会话期间只自然减少，结算时才扣除转移的时间
+        int[] live = durations.clone();
+        LiveEffects effects = new LiveEffects(effectIds);
+        CauldronSession<int[], CauldronTable> session = null;
+        long sampleTick = 0;
+        long decayedThrough = enterTick - 1;
+        for (long tick = enterTick; tick < leaveTick; tick++) {
+            if (BrewingRules.isDecayTick(tick)) {
+                table.tick();
+                decayedThrough = tick;
+            }
+            for (int i = 0; i < count; i++) {
+                if (live[i] > 0) {
+                    live[i]--;
+                }
+            }
+            if (session == null) {
+                // 进入锅的tick按逐tick规则转移
+                for (int i = 0; i < count; i++) {
+                    if (live[i] > 0) {
+                        live[i] = table.getOrCreate(POS).absorb(effectIds[i], levels[i], live[i]);
+                    }
+                }
+            } else {
+                session.tickAt(tick);
+                if (tick < sampleTick) {
+                    continue;
+                }
+                session.settle(table.getOrCreate(POS), decayedThrough, effects);
+            }
+            session = start(effectIds, levels, live, tick, table);
+            if (session != null) {
+                // 部分用例提前结算，覆盖更多的结算时间点
+                long interval = random.nextInt(4) == 0 ? 1 + random.nextInt(5) : CauldronSession.SAMPLE_INTERVAL_TICKS;
+                sampleTick = Math.min(session.getSampleTick(), tick + interval);
+            }
+        }
+        // 离开锅的tick结算到上一tick：离开或效果被移除时在玩家tick中结算，效果被刷新时可能在世界tick中途、衰减之前结算
+        boolean midLevelTick = random.nextBoolean();
+        if (session != null && midLevelTick) {
+            session.settle(table.getOrCreate(POS), decayedThrough, effects);
+        }
+        if (BrewingRules.isDecayTick(leaveTick)) {
+            reference.tick();
+            table.tick();
+            decayedThrough = leaveTick;
+        }
+        for (int i = 0; i < count; i++) {
+            if (expected[i] > 0) {
+                expected[i]--;
+            }
+            if (live[i] > 0) {
+                live[i]--;
+            }
+        }
+        if (session != null && !midLevelTick) {
+            session.settle(table.getOrCreate(POS), decayedThrough, effects);
+        }
+
+        String context = "case " + c + ": enter " + enterTick + ", leave " + leaveTick + (midLevelTick ? " mid level tick" : "")
+                + ", effects " + Arrays.toString(effectIds) + ", durations " + Arrays.toString(durations);
+        assertArrayEquals(expected, live, context);
+        assertSameState(reference.get(POS), table.get(POS), context);
+    }
+
+    /**
+     * 审查中发现的情况：锅中效果处于上限，第80tick世界tick中途结算时该tick的衰减尚未执行
+     * 用当前游戏时间结算会多算一次衰减，结果比逐tick少1
+     */
+    @Test
+    void settlesMidLevelTickOnADecayTick() {
+        CauldronTable reference = new CauldronTable();
+        CauldronTable table = new CauldronTable();
+        reference.getOrCreate(POS).addEffect(1, 0, 71990);
+        table.getOrCreate(POS).addEffect(1, 0, 71990);
+
+        // 参考模型：第71到79tick逐tick转移，第80tick的衰减在效果刷新之后执行
+        int[] expected = {1000};
+        for (long tick = 71; tick < 80; tick++) {
+            expected[0] = reference.getOrCreate(POS).absorb(1, 0, expected[0] - 1);
+        }
+        reference.tick();
+
+        // 会话模型：第71tick进入锅并开始会话，第72到79tick只自然减少
+        int[] live = {table.getOrCreate(POS).absorb(1, 0, 1000 - 1)};
+        CauldronSession<int[], CauldronTable> session = CauldronSession.start(live, table, POS, 71,
+                new int[] {1}, new int[] {0}, live, table.get(POS));
+        live[0] -= 8;
+        session.tickAt(79);
+        // 第80tick世界tick中途结算，此时衰减只执行到第70tick
+        session.settle(table.get(POS), 70, new LiveEffects(new int[] {1}));
+        table.tick();
+
+        assertEquals(BrewingRules.MAX_EFFECT_TIME - 1, table.get(POS).timeAt(0));
+        assertArrayEquals(expected, live);
+        assertSameState(reference.get(POS), table.get(POS), "mid level tick");
+    }
+
+    /**
+     * 与事件处理器一致：锅已被衰减移除时不开始会话
+     */
+    private static CauldronSession<int[], CauldronTable> start(int[] effectIds, int[] levels, int[] live, long tick, CauldronTable table) {
+        CauldronState state = table.get(POS);
+        return state != null ? CauldronSession.start(live, table, POS, tick, effectIds, levels, live, state) : null;
+    }
+
+    private static int randomDuration(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> 1 + random.nextInt(100);
+            case 1 -> 1 + random.nextInt(2000);
+            case 2 -> 1 + random.nextInt(20000);
+            default -> 60000 + random.nextInt(200000);
+        };
+    }
+
+    private static void assertSameState(CauldronState expected, CauldronState actual, String context) {
+        int expectedSize = expected == null ? 0 : expected.size();
+        int actualSize = actual == null ? 0 : actual.size();
+        assertEquals(expectedSize, actualSize, context);
+        for (int i = 0; i < expectedSize; i++) {
+            int index = actual.indexOf(expected.effectIdAt(i));
+            assertEquals(true, index >= 0, context + ": missing effect " + expected.effectIdAt(i));
+            assertEquals(expected.levelAt(i), actual.levelAt(index), context + ": level of " + expected.effectIdAt(i));
+            assertEquals(expected.timeAt(i), actual.timeAt(index), context + ": time of " + expected.effectIdAt(i));
+        }
+    }
+
+    /**
+     * 模拟玩家的效果时间，数组下标与效果ID列表对应
+     */
+    private static class LiveEffects implements CauldronSession.PlayerEffects<int[]> {
+        private final int[] effectIds;
+
+        LiveEffects(int[] effectIds) {
+            this.effectIds = effectIds;
+        }
+
+        @Override
+        public int durationOf(int[] live, int effectId) {
+            return live[indexOf(effectId)];
+        }
+
+        @Override
+        public void setDuration(int[] live, int effectId, int duration) {
+            live[indexOf(effectId)] = duration;
+        }
+
+        private int indexOf(int effectId) {
+            for (int i = 0; i < effectIds.length; i++) {
+                if (effectIds[i] == effectId) {
+                    return i;
+                }
+            }
+            throw new AssertionError("missing " + effectId);
+        }
+    }
+}